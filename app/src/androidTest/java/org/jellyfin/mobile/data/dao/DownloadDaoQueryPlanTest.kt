@@ -0,0 +1,39 @@
+package org.jellyfin.mobile.data.dao
+
+import androidx.room.Room
+import androidx.test.platform.app.InstrumentationRegistry
+import org.jellyfin.mobile.data.JellyfinDatabase
+import org.junit.After
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class DownloadDaoQueryPlanTest {
+    private lateinit var database: JellyfinDatabase
+
+    @Before
+    fun createDatabase() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        database = Room.inMemoryDatabaseBuilder(context, JellyfinDatabase::class.java).build()
+    }
+
+    @After
+    fun closeDatabase() {
+        database.close()
+    }
+
+    @Test
+    fun queuedDownloadsUseStatusIndex() {
+        val plan = database.openHelper.readableDatabase.query("EXPLAIN QUERY PLAN ${DownloadDao.QUEUED_DOWNLOADS_QUERY}").use { cursor ->
+            val detailIndex = cursor.getColumnIndexOrThrow("detail")
+            buildList {
+                while (cursor.moveToNext()) add(cursor.getString(detailIndex))
+            }
+        }
+
+        assertTrue(
+            "Queue query doesn't use the status index: $plan",
+            plan.any { step -> step.startsWith("SEARCH download USING INDEX index_download_status_created_at") },
+        )
+    }
+}
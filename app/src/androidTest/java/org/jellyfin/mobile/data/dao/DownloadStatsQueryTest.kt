@@ -0,0 +1,95 @@
+package org.jellyfin.mobile.data.dao
+
+import android.net.Uri
+import androidx.room.Room
+import androidx.test.platform.app.InstrumentationRegistry
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.jellyfin.mobile.data.JellyfinDatabase
+import org.jellyfin.mobile.data.entity.DownloadEntity
+import org.jellyfin.mobile.data.entity.DownloadFileEntity
+import org.jellyfin.mobile.data.entity.DownloadStats
+import org.jellyfin.mobile.downloads.DownloadFileType
+import org.jellyfin.mobile.downloads.DownloadStatus
+import org.jellyfin.sdk.model.api.BaseItemDto
+import org.jellyfin.sdk.model.api.BaseItemKind
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import java.util.UUID
+
+class DownloadStatsQueryTest {
+    private lateinit var database: JellyfinDatabase
+    private var serverId = 0L
+    private var userId = 0L
+
+    @Before
+    fun createDatabase() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        database = Room.inMemoryDatabaseBuilder(context, JellyfinDatabase::class.java).build()
+        serverId = database.serverDao.insert("https://demo.jellyfin.org")
+        userId = database.userDao.insert(serverId, UUID.randomUUID(), null)
+    }
+
+    @After
+    fun closeDatabase() {
+        database.close()
+    }
+
+    @Test
+    fun remainingSizeSubtractsDownloadedMainFiles() = runBlocking {
+        // Partially downloaded, only the main file counts towards the progress
+        val partial = insertDownload(DownloadStatus.QUEUED, expectedSize = 1000)
+        insertFile(partial, DownloadFileType.ITEM, DownloadStatus.DOWNLOADED, size = 300)
+        insertFile(partial, DownloadFileType.IMAGE_PRIMARY, DownloadStatus.DOWNLOADED, size = 50)
+
+        // Main file larger than expected, never negative
+        val oversized = insertDownload(DownloadStatus.DOWNLOADING, expectedSize = 500)
+        insertFile(oversized, DownloadFileType.ITEM, DownloadStatus.DOWNLOADED, size = 800)
+
+        // Main file not downloaded yet
+        val pending = insertDownload(DownloadStatus.QUEUED, expectedSize = 400)
+        insertFile(pending, DownloadFileType.ITEM, DownloadStatus.QUEUED, size = 100)
+
+        // Finished downloads don't have anything remaining
+        val finished = insertDownload(DownloadStatus.DOWNLOADED, expectedSize = 2000)
+        insertFile(finished, DownloadFileType.ITEM, DownloadStatus.DOWNLOADED, size = 2000)
+
+        val expected = DownloadStats(count = 4, downloadedCount = 1, queuedCount = 3, size = 3250, remainingSize = 1100)
+        assertEquals(expected, database.downloadDao.getStats().first())
+    }
+
+    @Test
+    fun emptyStatsAreZero() = runBlocking {
+        assertEquals(DownloadStats.Empty, database.downloadDao.getStats().first())
+    }
+
+    private suspend fun insertDownload(status: DownloadStatus, expectedSize: Long): Long {
+        val itemId = UUID.randomUUID()
+        return database.downloadDao.insert(
+            DownloadEntity(
+                serverId = serverId,
+                userId = userId,
+                itemId = itemId,
+                path = "downloads/$itemId",
+                item = BaseItemDto(id = itemId, type = BaseItemKind.MOVIE),
+                status = status,
+                expectedSize = expectedSize,
+            ),
+        )
+    }
+
+    private suspend fun insertFile(downloadId: Long, type: DownloadFileType, status: DownloadStatus, size: Long) {
+        database.downloadDao.insertFile(
+            DownloadFileEntity(
+                downloadId = downloadId,
+                type = type,
+                size = size,
+                fileName = "$downloadId-$type",
+                uri = Uri.parse("file:///downloads/$downloadId-$type"),
+                status = status,
+            ),
+        )
+    }
+}
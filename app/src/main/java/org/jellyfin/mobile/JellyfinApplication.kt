@@ -5,6 +5,7 @@ import android.webkit.WebView
 import org.jellyfin.mobile.app.apiModule
 import org.jellyfin.mobile.app.applicationModule
 import org.jellyfin.mobile.data.databaseModule
+import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder
 import org.jellyfin.mobile.utils.JellyTree
 import org.jellyfin.mobile.utils.isWebViewSupported
 import org.koin.android.ext.koin.androidContext
@@ -36,6 +37,9 @@ class JellyfinApplication : Application() {
                 apiModule,
                 databaseModule,
             )
+        }.koin.run {
+            // Probe codecs in the background if they changed, before the web client asks for them
+            get<DeviceProfileBuilder>().preload()
         }
     }
 }
@@ -9,6 +9,8 @@ import kotlinx.coroutines.launch
 import org.jellyfin.mobile.app.ApiClientController
 import org.jellyfin.mobile.data.entity.ServerEntity
 import org.jellyfin.mobile.data.entity.UserEntity
+import org.jellyfin.mobile.library.LibrarySyncWorker
+import org.jellyfin.mobile.player.journal.PlaybackJournalWorker
 import java.util.UUID
 
 class MainViewModel(
@@ -47,6 +49,11 @@ class MainViewModel(
     private suspend fun refreshUser() {
         val userEntity = apiClientController.loadSavedUser()
         _userState.value = userEntity?.let { entity -> UserState.Available(entity) } ?: UserState.Unset
+
+        if (userEntity != null) {
+            LibrarySyncWorker.start(getApplication())
+            PlaybackJournalWorker.start(getApplication())
+        }
     }
 
     /**
@@ -11,6 +11,7 @@ import org.jellyfin.sdk.Jellyfin
 import org.jellyfin.sdk.api.client.ApiClient
 import org.jellyfin.sdk.model.DeviceInfo
 import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 
 class ApiClientController(
     private val appPreferences: AppPreferences,
@@ -22,21 +23,34 @@ class ApiClientController(
     private val baseDeviceInfo: DeviceInfo
         get() = jellyfin.options.deviceInfo!!
 
+    /**
+     * API clients for background work, keyed by server and user id.
+     */
+    private val apiClients = ConcurrentHashMap<Pair<Long, Long>, ApiClient>()
+
     /**
      * Store server with [hostname] in the database.
      */
     suspend fun setupServer(hostname: String) {
-        appPreferences.currentServerId = withContext(Dispatchers.IO) {
+        val serverId = withContext(Dispatchers.IO) {
             serverDao.getServerByHostname(hostname)?.id ?: serverDao.insert(hostname)
         }
+        appPreferences.currentServerId = serverId
         apiClient.update(baseUrl = hostname)
+
+        for ((key, client) in apiClients) {
+            if (key.first == serverId && client.baseUrl != hostname) client.update(baseUrl = hostname)
+        }
     }
 
     suspend fun setupUser(serverId: Long, userId: UUID, accessToken: String) {
-        appPreferences.currentUserId = withContext(Dispatchers.IO) {
+        val id = withContext(Dispatchers.IO) {
             userDao.upsert(serverId, userId, accessToken)
         }
+        appPreferences.currentUserId = id
         configureApiClientUser(userId, accessToken)
+
+        apiClients[serverId to id]?.update(accessToken = accessToken)
     }
 
     suspend fun loadSavedServer(): ServerEntity? {
@@ -96,10 +110,16 @@ class ApiClientController(
         )
     }
 
-    fun getApiClient(server: Long, user: Long): ApiClient {
+    /**
+     * Get an API client for the given [server] and [user], independent of the currently active session.
+     *
+     * Clients are created once and reused, they are kept up to date by [setupServer] and [setupUser].
+     * Safe to call concurrently, but may hit the database on first use.
+     */
+    fun getApiClient(server: Long, user: Long): ApiClient = apiClients.computeIfAbsent(server to user) {
         val serverUser = userDao.getServerUser(server, user) ?: error("Invalid server user combination (server=$server, user=$user)")
 
-        return jellyfin.createApi(
+        jellyfin.createApi(
             baseUrl = serverUser.server.hostname,
             accessToken = serverUser.user.accessToken,
             deviceInfo = baseDeviceInfo.copy(id = baseDeviceInfo.id + serverUser.user.userId),
@@ -1,7 +1,9 @@
 package org.jellyfin.mobile.app
 
+import okhttp3.OkHttpClient
 import org.jellyfin.mobile.utils.Constants
 import org.jellyfin.sdk.Jellyfin
+import org.jellyfin.sdk.api.okhttp.OkHttpFactory
 import org.jellyfin.sdk.createJellyfin
 import org.jellyfin.sdk.model.ClientInfo
 import org.koin.android.ext.koin.androidContext
@@ -13,6 +15,8 @@ val apiModule = module {
         createJellyfin {
             context = androidContext()
             clientInfo = ClientInfo(name = Constants.APP_INFO_NAME, version = Constants.APP_INFO_VERSION)
+            // Share one connection pool and dispatcher between all API clients
+            apiClientFactory = OkHttpFactory(get<OkHttpClient>())
         }
     }
     single { get<Jellyfin>().createApi() }
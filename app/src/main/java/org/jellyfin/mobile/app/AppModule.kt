@@ -12,6 +12,7 @@ import androidx.media3.datasource.DefaultHttpDataSource
 import androidx.media3.datasource.ResolvingDataSource
 import androidx.media3.datasource.cache.Cache
 import androidx.media3.datasource.cache.CacheDataSource
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor
 import androidx.media3.datasource.cache.NoOpCacheEvictor
 import androidx.media3.datasource.cache.SimpleCache
 import androidx.media3.exoplayer.hls.HlsMediaSource
@@ -31,20 +32,28 @@ import org.jellyfin.mobile.bridge.NativePlayer
 import org.jellyfin.mobile.downloads.DownloadManager
 import org.jellyfin.mobile.downloads.DownloadNotificationManager
 import org.jellyfin.mobile.downloads.DownloadQueue
+import org.jellyfin.mobile.downloads.DownloadStatsRepository
 import org.jellyfin.mobile.downloads.DownloadsViewModel
 import org.jellyfin.mobile.downloads.FileDownloader
 import org.jellyfin.mobile.events.ActivityEventHandler
+import org.jellyfin.mobile.library.LibraryRepository
+import org.jellyfin.mobile.player.audio.AudioPassthroughMonitor
+import org.jellyfin.mobile.player.bandwidth.BandwidthEstimateStore
 import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder
 import org.jellyfin.mobile.player.interaction.PlayerEvent
+import org.jellyfin.mobile.player.journal.PlaybackJournal
 import org.jellyfin.mobile.player.mediasegments.MediaSegmentRepository
+import org.jellyfin.mobile.player.qoe.PlaybackSessionStore
 import org.jellyfin.mobile.player.qualityoptions.QualityOptionsProvider
 import org.jellyfin.mobile.player.source.MediaSourceResolver
+import org.jellyfin.mobile.player.startup.StartupTraceStore
 import org.jellyfin.mobile.player.ui.PlayerFragment
 import org.jellyfin.mobile.setup.ConnectionHelper
 import org.jellyfin.mobile.utils.Constants
 import org.jellyfin.mobile.utils.PermissionRequestHelper
 import org.jellyfin.mobile.utils.extractId
 import org.jellyfin.mobile.utils.isLowRamDevice
+import org.jellyfin.mobile.utils.toStreamingCacheKey
 import org.jellyfin.mobile.webapp.RemoteVolumeProvider
 import org.jellyfin.mobile.webapp.WebViewFragment
 import org.jellyfin.mobile.webapp.WebappFunctionChannel
@@ -58,6 +67,8 @@ import org.koin.dsl.module
 import java.io.File
 
 const val PLAYER_EVENT_CHANNEL = "PlayerEventChannel"
+const val STREAMING_CACHE = "StreamingCache"
+const val STREAMING_MEDIA_SOURCE_FACTORY = "StreamingMediaSourceFactory"
 private const val TS_SEARCH_PACKETS = 1800
 
 val applicationModule = module {
@@ -88,14 +99,22 @@ val applicationModule = module {
     fragment { WebViewFragment() }
     fragment { PlayerFragment() }
 
+    // Library cache
+    single { LibraryRepository(get(), get(), get(), get()) }
+
     // Connection helper
     single { ConnectionHelper(get(), get()) }
 
     // Media player helpers
-    single { MediaSourceResolver(get()) }
-    single { DeviceProfileBuilder(get()) }
+    single { BandwidthEstimateStore(get(), get()) }
+    single { MediaSourceResolver(get(), get()) }
+    single { AudioPassthroughMonitor(get()) }
+    single { DeviceProfileBuilder(get(), get(), get()) }
     single { QualityOptionsProvider() }
     single { MediaSegmentRepository() }
+    single { PlaybackJournal(get(), get(), get()) }
+    single { StartupTraceStore(get()) }
+    single { PlaybackSessionStore(get()) }
 
     // ExoPlayer factories
     single<DatabaseProvider> {
@@ -110,6 +129,11 @@ val applicationModule = module {
         val cache = SimpleCache(downloadPath, NoOpCacheEvictor(), get())
         cache
     }
+    single<Cache>(named(STREAMING_CACHE)) {
+        // Kept apart from the download cache, so that eviction never touches downloaded media
+        val streamingCachePath = File(get<Context>().cacheDir, Constants.STREAMING_CACHE_PATH)
+        SimpleCache(streamingCachePath, LeastRecentlyUsedCacheEvictor(Constants.STREAMING_CACHE_SIZE), get())
+    }
 
     single<DataSource.Factory> {
         val context: Context = get()
@@ -144,34 +168,58 @@ val applicationModule = module {
     }
 
     single<CacheDataSource.Factory> {
-        // Create a read-only cache data source factory using the download cache.
-        CacheDataSource.Factory()
-            .setCache(get())
+        createDownloadCacheDataSourceFactory(get(), get<DataSource.Factory>())
+    }
+
+    single<MediaSource.Factory> {
+        DefaultMediaSourceFactory(get<CacheDataSource.Factory>(), createExtractorsFactory(get()))
+    }
+
+    // Media source factory for direct play and direct stream, which additionally caches streamed bytes
+    single<MediaSource.Factory>(named(STREAMING_MEDIA_SOURCE_FACTORY)) {
+        val streamingCacheDataSourceFactory = CacheDataSource.Factory()
+            .setCache(get(named(STREAMING_CACHE)))
             .setUpstreamDataSourceFactory(get<DataSource.Factory>())
             .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
-            .setCacheWriteDataSinkFactory(null)
             .setCacheKeyFactory { spec ->
-                spec.key ?: spec.uri.extractId()
+                // Not the key of the spec, the download cache in front of this one sets it to the item id
+                spec.uri.toStreamingCacheKey()
             }
-    }
 
-    single<MediaSource.Factory> {
-        val context: Context = get()
-        val extractorsFactory = DefaultExtractorsFactory().apply {
-            // https://github.com/google/ExoPlayer/issues/8571
-            setTsExtractorTimestampSearchBytes(
-                when {
-                    !context.isLowRamDevice -> TS_SEARCH_PACKETS * TsExtractor.TS_PACKET_SIZE // 3x default
-                    else -> TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES
-                },
-            )
-        }
-        DefaultMediaSourceFactory(get<CacheDataSource.Factory>(), extractorsFactory)
+        // Downloaded media still takes precedence over the streaming cache
+        val dataSourceFactory = createDownloadCacheDataSourceFactory(get(), streamingCacheDataSourceFactory)
+        DefaultMediaSourceFactory(dataSourceFactory, createExtractorsFactory(get()))
     }
 
     single(createdAtStart = true) { StorageManager(get(), get()) }
-    single { DownloadManager(get(), get(), get(), get(), get()) }
+    single { DownloadManager(get(), get(), get(), get(), get(), get(), get()) }
     single { DownloadNotificationManager(get()) }
     single { DownloadQueue(get(), get(), get(), get(), get(), get()) }
+    single { DownloadStatsRepository(get()) }
     single { FileDownloader(get()) }
 }
+
+/**
+ * Create a read-only cache data source factory using the download cache.
+ */
+private fun createDownloadCacheDataSourceFactory(
+    downloadCache: Cache,
+    upstreamFactory: DataSource.Factory,
+): CacheDataSource.Factory = CacheDataSource.Factory()
+    .setCache(downloadCache)
+    .setUpstreamDataSourceFactory(upstreamFactory)
+    .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+    .setCacheWriteDataSinkFactory(null)
+    .setCacheKeyFactory { spec ->
+        spec.key ?: spec.uri.extractId()
+    }
+
+private fun createExtractorsFactory(context: Context) = DefaultExtractorsFactory().apply {
+    // https://github.com/google/ExoPlayer/issues/8571
+    setTsExtractorTimestampSearchBytes(
+        when {
+            !context.isLowRamDevice -> TS_SEARCH_PACKETS * TsExtractor.TS_PACKET_SIZE // 3x default
+            else -> TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES
+        },
+    )
+}
@@ -4,69 +4,146 @@ import android.content.Context
 import android.content.SharedPreferences
 import android.view.WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE
 import androidx.core.content.edit
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.update
 import org.jellyfin.mobile.downloads.DownloadMethod
 import org.jellyfin.mobile.player.mediasegments.MediaSegmentAction
+import org.jellyfin.mobile.player.mediasegments.toMediaSegmentActions
 import org.jellyfin.mobile.player.mediasegments.toMediaSegmentActionsString
 import org.jellyfin.mobile.settings.ExternalPlayerPackage
 import org.jellyfin.mobile.settings.VideoPlayerType
 import org.jellyfin.mobile.utils.Constants
 import org.jellyfin.sdk.model.api.MediaSegmentType
 
+/**
+ * Write-through cache of the app preferences.
+ *
+ * Reads are served from an immutable [PreferenceSnapshot], writes are applied to the snapshot immediately and persisted
+ * asynchronously. Changes made directly to the underlying [SharedPreferences], e.g. by the settings screen, are picked
+ * up through a change listener.
+ */
+@Suppress("TooManyFunctions")
 class AppPreferences(context: Context) {
+    companion object {
+        private val DEFAULT_MEDIA_SEGMENT_ACTIONS = mapOf(
+            MediaSegmentType.INTRO to MediaSegmentAction.ASK_TO_SKIP,
+            MediaSegmentType.OUTRO to MediaSegmentAction.ASK_TO_SKIP,
+        )
+    }
+
     private val sharedPreferences: SharedPreferences =
         context.getSharedPreferences("${context.packageName}_preferences", Context.MODE_PRIVATE)
 
+    private val _snapshot = MutableStateFlow(readSnapshot())
+    val snapshot: StateFlow<PreferenceSnapshot> get() = _snapshot
+
+    // Needs to be kept as a field, SharedPreferences only holds a weak reference to it
+    private val changeListener = SharedPreferences.OnSharedPreferenceChangeListener { _, _ ->
+        _snapshot.value = readSnapshot()
+    }
+
+    init {
+        sharedPreferences.registerOnSharedPreferenceChangeListener(changeListener)
+    }
+
+    private fun readSnapshot() = PreferenceSnapshot(
+        currentServerId = sharedPreferences.getLong(Constants.PREF_SERVER_ID, -1).takeIf { it >= 0 },
+        currentUserId = sharedPreferences.getLong(Constants.PREF_USER_ID, -1).takeIf { it >= 0 },
+        ignoreBatteryOptimizations = sharedPreferences.getBoolean(Constants.PREF_IGNORE_BATTERY_OPTIMIZATIONS, false),
+        ignoreWebViewChecks = sharedPreferences.getBoolean(Constants.PREF_IGNORE_WEBVIEW_CHECKS, false),
+        ignoreBluetoothPermission = sharedPreferences.getBoolean(Constants.PREF_IGNORE_BLUETOOTH_PERMISSION, false),
+        downloadMethod = DownloadMethod.fromInt(sharedPreferences.getInt(Constants.PREF_DOWNLOAD_METHOD, -1))
+            ?: DownloadMethod.DEFAULT,
+        storageLocation = sharedPreferences.getString(Constants.PREF_STORAGE_LOCATION, null),
+        mediaSegmentActions = sharedPreferences.getString(Constants.PREF_MEDIA_SEGMENT_ACTIONS, null)
+            ?.toMediaSegmentActions()
+            ?: DEFAULT_MEDIA_SEGMENT_ACTIONS,
+        musicNotificationAlwaysDismissible = sharedPreferences.getBoolean(
+            Constants.PREF_MUSIC_NOTIFICATION_ALWAYS_DISMISSIBLE,
+            false,
+        ),
+        videoPlayerType = sharedPreferences.getString(Constants.PREF_VIDEO_PLAYER_TYPE, VideoPlayerType.EXO_PLAYER)!!,
+        exoPlayerStartLandscapeVideoInLandscape = sharedPreferences.getBoolean(
+            Constants.PREF_EXOPLAYER_START_LANDSCAPE_VIDEO_IN_LANDSCAPE,
+            false,
+        ),
+        exoPlayerAllowSwipeGestures = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_SWIPE_GESTURES, true),
+        exoPlayerAllowPressSpeedUp = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_PRESS_SPEED_UP, true),
+        exoPlayerRememberBrightness = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_REMEMBER_BRIGHTNESS, false),
+        exoPlayerBrightness = sharedPreferences.getFloat(Constants.PREF_EXOPLAYER_BRIGHTNESS, BRIGHTNESS_OVERRIDE_NONE),
+        exoPlayerAllowBackgroundAudio = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_BACKGROUND_AUDIO, false),
+        exoPlayerAllowHorizontalGesture = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_HORIZONTAL_GESTURE, true),
+        exoPlayerDirectPlayAss = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_DIRECT_PLAY_ASS, false),
+        exoPlayerNetworkBuffer = sharedPreferences.getString(
+            Constants.PREF_EXOPLAYER_NETWORK_BUFFER,
+            Constants.NETWORK_BUFFER_AUTO,
+        )!!,
+        exoPlayerSubmitPlaybackStats = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_SUBMIT_PLAYBACK_STATS, false),
+        externalPlayerApp = sharedPreferences.getString(
+            Constants.PREF_EXTERNAL_PLAYER_APP,
+            ExternalPlayerPackage.SYSTEM_DEFAULT,
+        )!!,
+    )
+
     var currentServerId: Long?
-        get() = sharedPreferences.getLong(Constants.PREF_SERVER_ID, -1).takeIf { it >= 0 }
+        get() = _snapshot.value.currentServerId
         set(value) {
+            _snapshot.update { it.copy(currentServerId = value) }
             sharedPreferences.edit {
                 if (value != null) putLong(Constants.PREF_SERVER_ID, value) else remove(Constants.PREF_SERVER_ID)
             }
         }
 
     var currentUserId: Long?
-        get() = sharedPreferences.getLong(Constants.PREF_USER_ID, -1).takeIf { it >= 0 }
+        get() = _snapshot.value.currentUserId
         set(value) {
+            _snapshot.update { it.copy(currentUserId = value) }
             sharedPreferences.edit {
                 if (value != null) putLong(Constants.PREF_USER_ID, value) else remove(Constants.PREF_USER_ID)
             }
         }
 
     var ignoreBatteryOptimizations: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_IGNORE_BATTERY_OPTIMIZATIONS, false)
+        get() = _snapshot.value.ignoreBatteryOptimizations
         set(value) {
+            _snapshot.update { it.copy(ignoreBatteryOptimizations = value) }
             sharedPreferences.edit {
                 putBoolean(Constants.PREF_IGNORE_BATTERY_OPTIMIZATIONS, value)
             }
         }
 
     var ignoreWebViewChecks: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_IGNORE_WEBVIEW_CHECKS, false)
+        get() = _snapshot.value.ignoreWebViewChecks
         set(value) {
+            _snapshot.update { it.copy(ignoreWebViewChecks = value) }
             sharedPreferences.edit {
                 putBoolean(Constants.PREF_IGNORE_WEBVIEW_CHECKS, value)
             }
         }
 
     var ignoreBluetoothPermission: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_IGNORE_BLUETOOTH_PERMISSION, false)
+        get() = _snapshot.value.ignoreBluetoothPermission
         set(value) {
+            _snapshot.update { it.copy(ignoreBluetoothPermission = value) }
             sharedPreferences.edit {
                 putBoolean(Constants.PREF_IGNORE_BLUETOOTH_PERMISSION, value)
             }
         }
 
     var downloadMethod: DownloadMethod
-        get() = DownloadMethod.fromInt(sharedPreferences.getInt(Constants.PREF_DOWNLOAD_METHOD, -1)) ?: DownloadMethod.DEFAULT
+        get() = _snapshot.value.downloadMethod
         set(value) {
+            _snapshot.update { it.copy(downloadMethod = value) }
             sharedPreferences.edit {
                 putInt(Constants.PREF_DOWNLOAD_METHOD, value.intValue)
             }
         }
 
     var storageLocation: String?
-        get() = sharedPreferences.getString(Constants.PREF_STORAGE_LOCATION, null)
+        get() = _snapshot.value.storageLocation
         set(value) {
+            _snapshot.update { it.copy(storageLocation = value) }
             sharedPreferences.edit {
                 if (value == null) {
                     remove(Constants.PREF_STORAGE_LOCATION)
@@ -79,57 +156,63 @@ class AppPreferences(context: Context) {
     /**
      * The actions to take for each media segment type. Managed by the MediaSegmentRepository.
      */
-    var mediaSegmentActions: String
-        get() = sharedPreferences.getString(
-            Constants.PREF_MEDIA_SEGMENT_ACTIONS,
-            mapOf(
-                MediaSegmentType.INTRO to MediaSegmentAction.ASK_TO_SKIP,
-                MediaSegmentType.OUTRO to MediaSegmentAction.ASK_TO_SKIP,
-            ).toMediaSegmentActionsString(),
-        )!!
-        set(value) = sharedPreferences.edit { putString(Constants.PREF_MEDIA_SEGMENT_ACTIONS, value) }
+    var mediaSegmentActions: Map<MediaSegmentType, MediaSegmentAction>
+        get() = _snapshot.value.mediaSegmentActions
+        set(value) {
+            _snapshot.update { it.copy(mediaSegmentActions = value) }
+            sharedPreferences.edit {
+                putString(Constants.PREF_MEDIA_SEGMENT_ACTIONS, value.toMediaSegmentActionsString())
+            }
+        }
 
     val musicNotificationAlwaysDismissible: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_MUSIC_NOTIFICATION_ALWAYS_DISMISSIBLE, false)
+        get() = _snapshot.value.musicNotificationAlwaysDismissible
 
     @VideoPlayerType
     val videoPlayerType: String
-        get() = sharedPreferences.getString(Constants.PREF_VIDEO_PLAYER_TYPE, VideoPlayerType.EXO_PLAYER)!!
+        get() = _snapshot.value.videoPlayerType
 
     val exoPlayerStartLandscapeVideoInLandscape: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_START_LANDSCAPE_VIDEO_IN_LANDSCAPE, false)
+        get() = _snapshot.value.exoPlayerStartLandscapeVideoInLandscape
 
     val exoPlayerAllowSwipeGestures: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_SWIPE_GESTURES, true)
+        get() = _snapshot.value.exoPlayerAllowSwipeGestures
 
     val exoPlayerAllowPressSpeedUp: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_PRESS_SPEED_UP, true)
+        get() = _snapshot.value.exoPlayerAllowPressSpeedUp
 
     val exoPlayerRememberBrightness: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_REMEMBER_BRIGHTNESS, false)
+        get() = _snapshot.value.exoPlayerRememberBrightness
 
     var exoPlayerBrightness: Float
-        get() = sharedPreferences.getFloat(Constants.PREF_EXOPLAYER_BRIGHTNESS, BRIGHTNESS_OVERRIDE_NONE)
+        get() = _snapshot.value.exoPlayerBrightness
         set(value) {
+            _snapshot.update { it.copy(exoPlayerBrightness = value) }
             sharedPreferences.edit {
                 putFloat(Constants.PREF_EXOPLAYER_BRIGHTNESS, value)
             }
         }
 
     val exoPlayerAllowBackgroundAudio: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_BACKGROUND_AUDIO, false)
+        get() = _snapshot.value.exoPlayerAllowBackgroundAudio
 
     val exoPlayerAllowHorizontalGesture: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_ALLOW_HORIZONTAL_GESTURE, true)
+        get() = _snapshot.value.exoPlayerAllowHorizontalGesture
 
     val exoPlayerDirectPlayAss: Boolean
-        get() = sharedPreferences.getBoolean(Constants.PREF_EXOPLAYER_DIRECT_PLAY_ASS, false)
+        get() = _snapshot.value.exoPlayerDirectPlayAss
 
     val exoPlayerNetworkBuffer: String
-        get() = sharedPreferences.getString(Constants.PREF_EXOPLAYER_NETWORK_BUFFER, Constants.NETWORK_BUFFER_AUTO)!!
+        get() = _snapshot.value.exoPlayerNetworkBuffer
+
+    val exoPlayerSubmitPlaybackStats: Boolean
+        get() = _snapshot.value.exoPlayerSubmitPlaybackStats
 
     @ExternalPlayerPackage
     var externalPlayerApp: String
-        get() = sharedPreferences.getString(Constants.PREF_EXTERNAL_PLAYER_APP, ExternalPlayerPackage.SYSTEM_DEFAULT)!!
-        set(value) = sharedPreferences.edit { putString(Constants.PREF_EXTERNAL_PLAYER_APP, value) }
+        get() = _snapshot.value.externalPlayerApp
+        set(value) {
+            _snapshot.update { it.copy(externalPlayerApp = value) }
+            sharedPreferences.edit { putString(Constants.PREF_EXTERNAL_PLAYER_APP, value) }
+        }
 }
@@ -0,0 +1,34 @@
+package org.jellyfin.mobile.app
+
+import org.jellyfin.mobile.downloads.DownloadMethod
+import org.jellyfin.mobile.player.mediasegments.MediaSegmentAction
+import org.jellyfin.mobile.settings.ExternalPlayerPackage
+import org.jellyfin.mobile.settings.VideoPlayerType
+import org.jellyfin.sdk.model.api.MediaSegmentType
+
+/**
+ * Immutable, already parsed state of all app preferences, see [AppPreferences.snapshot].
+ */
+data class PreferenceSnapshot(
+    val currentServerId: Long?,
+    val currentUserId: Long?,
+    val ignoreBatteryOptimizations: Boolean,
+    val ignoreWebViewChecks: Boolean,
+    val ignoreBluetoothPermission: Boolean,
+    val downloadMethod: DownloadMethod,
+    val storageLocation: String?,
+    val mediaSegmentActions: Map<MediaSegmentType, MediaSegmentAction>,
+    val musicNotificationAlwaysDismissible: Boolean,
+    @VideoPlayerType val videoPlayerType: String,
+    val exoPlayerStartLandscapeVideoInLandscape: Boolean,
+    val exoPlayerAllowSwipeGestures: Boolean,
+    val exoPlayerAllowPressSpeedUp: Boolean,
+    val exoPlayerRememberBrightness: Boolean,
+    val exoPlayerBrightness: Float,
+    val exoPlayerAllowBackgroundAudio: Boolean,
+    val exoPlayerAllowHorizontalGesture: Boolean,
+    val exoPlayerDirectPlayAss: Boolean,
+    val exoPlayerNetworkBuffer: String,
+    val exoPlayerSubmitPlaybackStats: Boolean,
+    @ExternalPlayerPackage val externalPlayerApp: String,
+)
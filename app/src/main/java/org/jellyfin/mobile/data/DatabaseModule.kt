@@ -14,4 +14,7 @@ val databaseModule = module {
     single { get<JellyfinDatabase>().serverDao }
     single { get<JellyfinDatabase>().userDao }
     single { get<JellyfinDatabase>().downloadDao }
+    single { get<JellyfinDatabase>().libraryDao }
+    single { get<JellyfinDatabase>().playbackJournalDao }
+    single { get<JellyfinDatabase>().mediaSegmentDao }
 }
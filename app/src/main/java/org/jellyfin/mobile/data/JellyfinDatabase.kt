@@ -12,13 +12,24 @@ import androidx.room.migration.AutoMigrationSpec
 import androidx.sqlite.db.SupportSQLiteDatabase
 import kotlinx.serialization.json.Json
 import org.jellyfin.mobile.data.dao.DownloadDao
+import org.jellyfin.mobile.data.dao.LibraryDao
+import org.jellyfin.mobile.data.dao.MediaSegmentDao
+import org.jellyfin.mobile.data.dao.PlaybackJournalDao
 import org.jellyfin.mobile.data.dao.ServerDao
 import org.jellyfin.mobile.data.dao.UserDao
 import org.jellyfin.mobile.data.entity.DownloadEntity
 import org.jellyfin.mobile.data.entity.DownloadFileEntity
+import org.jellyfin.mobile.data.entity.LibraryItemEntity
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity
 import org.jellyfin.mobile.data.entity.ServerEntity
 import org.jellyfin.mobile.data.entity.UserEntity
 import org.jellyfin.sdk.model.api.BaseItemDto
+import org.jellyfin.sdk.model.api.MediaSegmentDto
 import org.jellyfin.sdk.model.serializer.toUUIDOrNull
 import timber.log.Timber
 import java.util.UUID
@@ -29,12 +40,25 @@ import java.util.UUID
         UserEntity::class,
         DownloadEntity::class,
         DownloadFileEntity::class,
+        LibraryItemEntity::class,
+        LibraryUserDataEntity::class,
+        LibraryRelationEntity::class,
+        LibrarySyncEntity::class,
+        LibrarySearchEntity::class,
+        PlaybackJournalEntity::class,
+        MediaSegmentCacheEntity::class,
     ],
-    version = 5,
+    version = 11,
     autoMigrations = [
         AutoMigration(from = 2, to = 3),
         AutoMigration(from = 3, to = 4, spec = JellyfinDatabase.MigrateV4::class),
         AutoMigration(from = 4, to = 5, spec = JellyfinDatabase.MigrateV5::class),
+        AutoMigration(from = 5, to = 6),
+        AutoMigration(from = 6, to = 7),
+        AutoMigration(from = 7, to = 8),
+        AutoMigration(from = 8, to = 9),
+        AutoMigration(from = 9, to = 10),
+        AutoMigration(from = 10, to = 11),
     ],
 )
 @TypeConverters(JellyfinDatabase.Converters::class)
@@ -42,6 +66,9 @@ abstract class JellyfinDatabase : RoomDatabase() {
     abstract val serverDao: ServerDao
     abstract val userDao: UserDao
     abstract val downloadDao: DownloadDao
+    abstract val libraryDao: LibraryDao
+    abstract val playbackJournalDao: PlaybackJournalDao
+    abstract val mediaSegmentDao: MediaSegmentDao
 
     // Converters
 
@@ -58,6 +85,12 @@ abstract class JellyfinDatabase : RoomDatabase() {
         @TypeConverter
         fun toBaseItemDto(json: String?): BaseItemDto? = json?.let(Json::decodeFromString)
 
+        @TypeConverter
+        fun fromMediaSegments(segments: List<MediaSegmentDto>?): String? = segments?.let { Json.encodeToString(it) }
+
+        @TypeConverter
+        fun toMediaSegments(json: String?): List<MediaSegmentDto>? = json?.let { Json.decodeFromString(it) }
+
         @TypeConverter
         fun fromUri(uri: Uri?): String? = uri?.toString()
 
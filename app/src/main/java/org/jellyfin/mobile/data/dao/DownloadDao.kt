@@ -10,9 +10,12 @@ import kotlinx.coroutines.flow.Flow
 import org.jellyfin.mobile.data.entity.DownloadEntity
 import org.jellyfin.mobile.data.entity.DownloadFileEntity
 import org.jellyfin.mobile.data.entity.DownloadFiles
+import org.jellyfin.mobile.data.entity.DownloadStats
+import org.jellyfin.mobile.data.entity.QueuedDownload
 import org.jellyfin.sdk.model.UUID
 
 @Dao
+@Suppress("TooManyFunctions")
 interface DownloadDao {
     @Query("SELECT * FROM download ORDER BY created_at DESC")
     fun getAllDownloads(): Flow<List<DownloadEntity>>
@@ -21,9 +24,42 @@ interface DownloadDao {
     @Query("SELECT * FROM download ORDER BY created_at DESC")
     fun getAllDownloadsWithFiles(): Flow<List<DownloadFiles>>
 
+    /**
+     * Get the queued and running downloads in the order they should be processed.
+     * Only returns a small projection so that scheduling doesn't need to decode the item of every download.
+     */
+    @Query(QUEUED_DOWNLOADS_QUERY)
+    suspend fun getQueuedDownloads(): List<QueuedDownload>
+
     @Transaction
-    @Query("SELECT * FROM download WHERE status = 'QUEUED' OR status = 'DOWNLOADING' ORDER BY created_at ASC")
-    fun getQueuedDownloads(): List<DownloadFiles>
+    @Query("SELECT * FROM download WHERE id = :id")
+    suspend fun getDownloadWithFiles(id: Long): DownloadFiles?
+
+    /**
+     * Observe the aggregated statistics of all downloads.
+     * The remaining size of a queued download is its expected size minus the size of its completed main file.
+     */
+    @Query(
+        """
+        SELECT
+            COUNT(*) AS count,
+            COALESCE(SUM(download.status = 'DOWNLOADED'), 0) AS downloaded_count,
+            COALESCE(SUM(download.status IN ('QUEUED', 'DOWNLOADING')), 0) AS queued_count,
+            (SELECT COALESCE(SUM(download_file.size), 0) FROM download_file) AS size,
+            COALESCE(SUM(
+                CASE WHEN download.status IN ('QUEUED', 'DOWNLOADING') THEN MAX(
+                    download.expected_size - (
+                        SELECT COALESCE(SUM(download_file.size), 0) FROM download_file
+                        WHERE download_file.download_id = download.id
+                            AND download_file.type = 'ITEM' AND download_file.status = 'DOWNLOADED'
+                    ),
+                    0
+                ) ELSE 0 END
+            ), 0) AS remaining_size
+        FROM download
+        """,
+    )
+    fun getStats(): Flow<DownloadStats>
 
     @Query("SELECT * FROM download WHERE item_id IN (:itemIds)")
     fun getDownloadsByItemIds(itemIds: Collection<UUID>): List<DownloadEntity>
@@ -51,4 +87,18 @@ interface DownloadDao {
 
     @Update(onConflict = OnConflictStrategy.REPLACE)
     suspend fun updateFile(entity: DownloadFileEntity): Int
+
+    companion object {
+        /**
+         * The query behind [getQueuedDownloads], it uses the index on status and creation time of the download table.
+         */
+        const val QUEUED_DOWNLOADS_QUERY = """
+            SELECT download.id, download.item_id, download.path, COALESCE(SUM(download_file.size), 0) AS size
+            FROM download
+            LEFT JOIN download_file ON download_file.download_id = download.id
+            WHERE download.status IN ('QUEUED', 'DOWNLOADING')
+            GROUP BY download.id
+            ORDER BY download.created_at ASC
+        """
+    }
 }
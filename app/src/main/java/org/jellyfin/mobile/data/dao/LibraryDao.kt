@@ -0,0 +1,153 @@
+package org.jellyfin.mobile.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import androidx.room.Transaction
+import kotlinx.coroutines.flow.Flow
+import org.jellyfin.mobile.data.entity.LibraryItemEntity
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity
+import org.jellyfin.mobile.data.entity.LibrarySearchMatch
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity
+import java.util.UUID
+
+@Dao
+@Suppress("TooManyFunctions")
+interface LibraryDao {
+    @Query("SELECT * FROM library_item WHERE user_id = :userId AND item_id = :itemId")
+    suspend fun getItem(userId: Long, itemId: UUID): LibraryItemEntity?
+
+    @Query("SELECT * FROM library_item WHERE user_id = :userId AND item_id = :itemId")
+    fun observeItem(userId: Long, itemId: UUID): Flow<LibraryItemEntity?>
+
+    @Query("SELECT * FROM library_item WHERE user_id = :userId AND item_id IN (:itemIds)")
+    suspend fun getItems(userId: Long, itemIds: Collection<UUID>): List<LibraryItemEntity>
+
+    @Query(
+        """
+        SELECT library_item.* FROM library_relation
+        INNER JOIN library_item
+            ON library_item.user_id = library_relation.user_id AND library_item.item_id = library_relation.child_id
+        WHERE library_relation.user_id = :userId AND library_relation.parent_id = :parentId
+        ORDER BY library_relation.sort_index ASC
+        LIMIT :limit OFFSET :offset
+        """,
+    )
+    suspend fun getChildren(userId: Long, parentId: UUID, offset: Int, limit: Int): List<LibraryItemEntity>
+
+    @Query("SELECT item_id FROM library_item WHERE user_id = :userId AND complete = 1 AND item_id IN (:itemIds)")
+    suspend fun getCompleteItemIds(userId: Long, itemIds: Collection<UUID>): List<UUID>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertItems(entities: List<LibraryItemEntity>)
+
+    /**
+     * Insert partial items, keeping any complete copy that is already cached.
+     */
+    @Transaction
+    suspend fun insertPartialItems(userId: Long, entities: List<LibraryItemEntity>) {
+        val completeItemIds = getCompleteItemIds(userId, entities.map(LibraryItemEntity::itemId)).toSet()
+        insertItems(entities.filterNot { entity -> entity.itemId in completeItemIds })
+    }
+
+    @Query("UPDATE library_item SET date_last_saved = :dateLastSaved WHERE user_id = :userId AND item_id IN (:itemIds)")
+    suspend fun updateDateLastSaved(userId: Long, itemIds: Collection<UUID>, dateLastSaved: Long)
+
+    /**
+     * Insert partial items changed on the server since [dateLastSaved].
+     *
+     * Complete copies that are already cached are kept, but marked as changed so that they get revalidated.
+     */
+    @Transaction
+    suspend fun insertChangedItems(userId: Long, entities: List<LibraryItemEntity>, dateLastSaved: Long) {
+        val completeItemIds = getCompleteItemIds(userId, entities.map(LibraryItemEntity::itemId)).toSet()
+        insertItems(entities.filterNot { entity -> entity.itemId in completeItemIds })
+        updateDateLastSaved(userId, completeItemIds, dateLastSaved)
+    }
+
+    @Query("DELETE FROM library_item WHERE cached_at < :timestamp")
+    suspend fun deleteItemsCachedBefore(timestamp: Long): Int
+
+    @Query("SELECT * FROM library_user_data WHERE user_id = :userId AND item_id IN (:itemIds)")
+    suspend fun getUserData(userId: Long, itemIds: Collection<UUID>): List<LibraryUserDataEntity>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertUserData(entities: List<LibraryUserDataEntity>)
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertRelations(entities: List<LibraryRelationEntity>)
+
+    @Query(
+        """
+        DELETE FROM library_relation
+        WHERE user_id = :userId AND parent_id = :parentId AND sort_index >= :fromIndex AND sort_index < :toIndex
+        """,
+    )
+    suspend fun deleteRelations(userId: Long, parentId: UUID, fromIndex: Int, toIndex: Int)
+
+    /**
+     * Replace the children of [parentId] in the range starting at [offset] with [childIds].
+     *
+     * @param endOfList whether [childIds] is the last page of children, in which case all relations
+     * following it are removed as well.
+     */
+    @Transaction
+    suspend fun replaceChildren(userId: Long, parentId: UUID, offset: Int, childIds: List<UUID>, endOfList: Boolean) {
+        val toIndex = if (endOfList) Int.MAX_VALUE else offset + childIds.size
+        deleteRelations(userId, parentId, offset, toIndex)
+        insertRelations(
+            childIds.mapIndexed { index, childId ->
+                LibraryRelationEntity(userId, parentId, childId, offset + index)
+            },
+        )
+    }
+
+    @Query(
+        """
+        SELECT item_id, kind, matchinfo(library_search, 'pcx') AS match_info FROM library_search
+        WHERE library_search MATCH :query AND user_id = :userId AND kind IN (:kinds)
+        """,
+    )
+    suspend fun search(userId: Long, query: String, kinds: Collection<String>): List<LibrarySearchMatch>
+
+    @Insert
+    suspend fun insertSearchEntries(entities: List<LibrarySearchEntity>)
+
+    @Query("DELETE FROM library_search WHERE user_id = :userId AND item_id IN (:itemIds)")
+    suspend fun deleteSearchEntries(userId: Long, itemIds: Collection<UUID>)
+
+    /**
+     * Replace the search index entries of the items in [entities].
+     */
+    @Transaction
+    suspend fun indexItems(userId: Long, entities: List<LibrarySearchEntity>) {
+        deleteSearchEntries(userId, entities.map(LibrarySearchEntity::itemId))
+        insertSearchEntries(entities)
+    }
+
+    /**
+     * Remove search index entries of items that are neither cached nor downloaded anymore.
+     */
+    @Query(
+        """
+        DELETE FROM library_search
+        WHERE NOT EXISTS (
+            SELECT 1 FROM library_item
+            WHERE library_item.user_id = library_search.user_id AND library_item.item_id = library_search.item_id
+        ) AND NOT EXISTS (
+            SELECT 1 FROM download
+            WHERE download.user_id = library_search.user_id AND download.item_id = library_search.item_id
+        )
+        """,
+    )
+    suspend fun pruneSearchIndex(): Int
+
+    @Query("SELECT * FROM library_sync WHERE user_id = :userId")
+    suspend fun getSyncState(userId: Long): LibrarySyncEntity?
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertSyncState(entity: LibrarySyncEntity)
+}
@@ -0,0 +1,23 @@
+package org.jellyfin.mobile.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity
+import java.util.UUID
+
+@Dao
+interface MediaSegmentDao {
+    @Query("SELECT * FROM media_segment_cache WHERE user_id = :userId AND item_id = :itemId")
+    suspend fun getSegments(userId: Long, itemId: UUID): MediaSegmentCacheEntity?
+
+    @Query("SELECT item_id FROM media_segment_cache WHERE user_id = :userId AND item_id IN (:itemIds) AND cached_at >= :timestamp")
+    suspend fun getItemIdsCachedSince(userId: Long, itemIds: Collection<UUID>, timestamp: Long): List<UUID>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun insertSegments(entity: MediaSegmentCacheEntity)
+
+    @Query("DELETE FROM media_segment_cache WHERE cached_at < :timestamp AND item_id NOT IN (SELECT item_id FROM download)")
+    suspend fun deleteSegmentsCachedBefore(timestamp: Long): Int
+}
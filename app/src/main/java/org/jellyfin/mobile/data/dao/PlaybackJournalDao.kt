@@ -0,0 +1,39 @@
+package org.jellyfin.mobile.data.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import androidx.room.Transaction
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity
+import org.jellyfin.mobile.player.journal.PlaybackEvent
+import java.util.UUID
+
+@Dao
+interface PlaybackJournalDao {
+    @Insert
+    suspend fun insert(entity: PlaybackJournalEntity): Long
+
+    /**
+     * Append [entity] to the journal, dropping any older progress of the same item as it is superseded by [entity].
+     */
+    @Transaction
+    suspend fun append(entity: PlaybackJournalEntity): Long {
+        deleteEvents(entity.userId, entity.itemId, PlaybackEvent.PROGRESS)
+        return insert(entity)
+    }
+
+    @Query("DELETE FROM playback_journal WHERE user_id = :userId AND item_id = :itemId AND event = :event")
+    suspend fun deleteEvents(userId: Long, itemId: UUID, event: PlaybackEvent)
+
+    /**
+     * Remove the entry with [id] and all older entries of the same item.
+     */
+    @Query("DELETE FROM playback_journal WHERE user_id = :userId AND item_id = :itemId AND id <= :id")
+    suspend fun deleteUpTo(userId: Long, itemId: UUID, id: Long)
+
+    @Query("SELECT DISTINCT user_id FROM playback_journal")
+    suspend fun getPendingUsers(): List<Long>
+
+    @Query("SELECT * FROM playback_journal WHERE user_id = :userId ORDER BY id ASC")
+    suspend fun getEntries(userId: Long): List<PlaybackJournalEntity>
+}
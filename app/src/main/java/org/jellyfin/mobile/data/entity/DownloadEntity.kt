@@ -14,7 +14,12 @@ import java.util.UUID
 
 @Entity(
     tableName = "download",
-    indices = [Index(value = ["server_id"]), Index(value = ["user_id"]), Index(value = ["item_id"])],
+    indices = [
+        Index(value = ["server_id"]),
+        Index(value = ["user_id"]),
+        Index(value = ["item_id"]),
+        Index(value = ["status", "created_at"]),
+    ],
     foreignKeys = [
         ForeignKey(
             entity = ServerEntity::class,
@@ -45,6 +50,11 @@ data class DownloadEntity(
 
     @ColumnInfo(name = "created_at") val createdAt: Long = System.currentTimeMillis(),
     @ColumnInfo(name = "modified_at") var modifiedAt: Long = System.currentTimeMillis(),
+
+    /**
+     * The size of the main file as reported by the server, used to estimate the remaining bytes of queued downloads.
+     */
+    @ColumnInfo(name = "expected_size", defaultValue = "0") val expectedSize: Long = 0L,
 ) {
     fun getDisplayName(context: Context) = buildString {
         val name = if (
@@ -0,0 +1,18 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+
+/**
+ * Aggregated statistics over all downloads, computed in SQLite.
+ */
+data class DownloadStats(
+    @ColumnInfo(name = "count") val count: Int,
+    @ColumnInfo(name = "downloaded_count") val downloadedCount: Int,
+    @ColumnInfo(name = "queued_count") val queuedCount: Int,
+    @ColumnInfo(name = "size") val size: Long,
+    @ColumnInfo(name = "remaining_size") val remainingSize: Long,
+) {
+    companion object {
+        val Empty = DownloadStats(count = 0, downloadedCount = 0, queuedCount = 0, size = 0L, remainingSize = 0L)
+    }
+}
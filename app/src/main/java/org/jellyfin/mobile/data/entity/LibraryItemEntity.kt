@@ -0,0 +1,68 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.CACHED_AT
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.COMPLETE
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.DATE_LAST_SAVED
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.ITEM
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.ITEM_ID
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.PARENT_ID
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.LibraryItemEntity.Key.USER_ID
+import org.jellyfin.sdk.model.api.BaseItemDto
+import java.util.UUID
+
+/**
+ * Cached copy of a [BaseItemDto] as seen by a specific user.
+ *
+ * Items fetched through list queries only contain a subset of the fields, they are stored with [complete] set to false
+ * and never replace a complete copy of the same item.
+ * A complete copy that changed on the server is kept until it is revalidated, [dateLastSaved] is newer than [cachedAt]
+ * in that case.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    primaryKeys = [USER_ID, ITEM_ID],
+    indices = [
+        Index(value = [USER_ID, PARENT_ID]),
+        Index(value = [CACHED_AT]),
+    ],
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class LibraryItemEntity(
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = PARENT_ID)
+    val parentId: UUID?,
+    @ColumnInfo(name = ITEM)
+    val item: BaseItemDto,
+    @ColumnInfo(name = COMPLETE)
+    val complete: Boolean,
+    @ColumnInfo(name = DATE_LAST_SAVED)
+    val dateLastSaved: Long?,
+    @ColumnInfo(name = CACHED_AT)
+    val cachedAt: Long = System.currentTimeMillis(),
+) {
+    companion object Key {
+        const val TABLE_NAME = "library_item"
+        const val USER_ID = "user_id"
+        const val ITEM_ID = "item_id"
+        const val PARENT_ID = "parent_id"
+        const val ITEM = "item"
+        const val COMPLETE = "complete"
+        const val DATE_LAST_SAVED = "date_last_saved"
+        const val CACHED_AT = "cached_at"
+    }
+}
@@ -0,0 +1,49 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity.Key.CHILD_ID
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity.Key.PARENT_ID
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity.Key.SORT_INDEX
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.LibraryRelationEntity.Key.USER_ID
+import java.util.UUID
+
+/**
+ * Ordered parent/child relation between cached items, e.g. the tracks of an album or the entries of a playlist.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    primaryKeys = [USER_ID, PARENT_ID, CHILD_ID],
+    indices = [
+        Index(value = [USER_ID, PARENT_ID, SORT_INDEX]),
+    ],
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class LibraryRelationEntity(
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = PARENT_ID)
+    val parentId: UUID,
+    @ColumnInfo(name = CHILD_ID)
+    val childId: UUID,
+    @ColumnInfo(name = SORT_INDEX)
+    val sortIndex: Int,
+) {
+    companion object Key {
+        const val TABLE_NAME = "library_relation"
+        const val USER_ID = "user_id"
+        const val PARENT_ID = "parent_id"
+        const val CHILD_ID = "child_id"
+        const val SORT_INDEX = "sort_index"
+    }
+}
@@ -0,0 +1,81 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+import androidx.room.PrimaryKey
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.ALBUM
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.ARTISTS
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.ITEM_ID
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.KIND
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.NAME
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.OVERVIEW
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.ROW_ID
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.SERIES_NAME
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity.Key.USER_ID
+import java.util.UUID
+
+/**
+ * Full-text search index over cached and downloaded items.
+ *
+ * The unicode61 tokenizer folds case and diacritics, the prefix indices keep prefix queries of short terms fast.
+ */
+@Fts4(
+    tokenizer = FtsOptions.TOKENIZER_UNICODE61,
+    tokenizerArgs = ["remove_diacritics=1"],
+    prefix = [2, 3],
+    notIndexed = [USER_ID, ITEM_ID, KIND],
+)
+@Entity(tableName = TABLE_NAME)
+data class LibrarySearchEntity(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = ROW_ID)
+    val rowId: Long,
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = KIND)
+    val kind: String,
+    @ColumnInfo(name = NAME)
+    val name: String?,
+    @ColumnInfo(name = SERIES_NAME)
+    val seriesName: String?,
+    @ColumnInfo(name = ALBUM)
+    val album: String?,
+    @ColumnInfo(name = ARTISTS)
+    val artists: String?,
+    @ColumnInfo(name = OVERVIEW)
+    val overview: String?,
+) {
+    constructor(
+        userId: Long,
+        itemId: UUID,
+        kind: String,
+        name: String?,
+        seriesName: String?,
+        album: String?,
+        artists: String?,
+        overview: String?,
+    ) : this(0, userId, itemId, kind, name, seriesName, album, artists, overview)
+
+    companion object Key {
+        const val TABLE_NAME = "library_search"
+        const val ROW_ID = "rowid"
+        const val USER_ID = "user_id"
+        const val ITEM_ID = "item_id"
+        const val KIND = "kind"
+        const val NAME = "name"
+        const val SERIES_NAME = "series_name"
+        const val ALBUM = "album"
+        const val ARTISTS = "artists"
+        const val OVERVIEW = "overview"
+
+        /**
+         * Column weights used for ranking, in the order of the columns of the table.
+         */
+        val COLUMN_WEIGHTS = intArrayOf(0, 0, 0, 10, 4, 3, 3, 1)
+    }
+}
@@ -0,0 +1,40 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.UUID
+
+/**
+ * A single full-text search hit, with the raw `matchinfo(library_search, 'pcx')` blob used for ranking.
+ */
+class LibrarySearchMatch(
+    @ColumnInfo(name = LibrarySearchEntity.ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = LibrarySearchEntity.KIND)
+    val kind: String,
+    @ColumnInfo(name = MATCH_INFO)
+    val matchInfo: ByteArray,
+) {
+    /**
+     * Relevance of this hit, the number of phrase hits per column weighted by [LibrarySearchEntity.COLUMN_WEIGHTS].
+     */
+    val score: Int
+        get() {
+            val ints = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer()
+            val phraseCount = ints[0]
+            val columnCount = ints[1]
+            var score = 0
+            for (phrase in 0 until phraseCount) {
+                for (column in 0 until columnCount) {
+                    val hits = ints[2 + (phrase * columnCount + column) * 3]
+                    score += hits * LibrarySearchEntity.COLUMN_WEIGHTS.getOrElse(column) { 1 }
+                }
+            }
+            return score
+        }
+
+    companion object {
+        const val MATCH_INFO = "match_info"
+    }
+}
@@ -0,0 +1,37 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.PrimaryKey
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity.Key.LAST_SYNC_TIMESTAMP
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity.Key.USER_ID
+
+/**
+ * Watermark of the last successful incremental library sync of a user.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class LibrarySyncEntity(
+    @PrimaryKey
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = LAST_SYNC_TIMESTAMP)
+    val lastSyncTimestamp: Long,
+) {
+    companion object Key {
+        const val TABLE_NAME = "library_sync"
+        const val USER_ID = "user_id"
+        const val LAST_SYNC_TIMESTAMP = "last_sync_timestamp"
+    }
+}
@@ -0,0 +1,63 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.IS_FAVORITE
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.ITEM_ID
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.LAST_PLAYED_DATE
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.MODIFIED_AT
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.PLAYBACK_POSITION_TICKS
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.PLAYED
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.PLAY_COUNT
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity.Key.USER_ID
+import java.util.UUID
+
+/**
+ * Cached user data (played state, resume position, favorite) of an item.
+ *
+ * Kept separate from [LibraryItemEntity] as it changes far more often than the item metadata itself.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    primaryKeys = [USER_ID, ITEM_ID],
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class LibraryUserDataEntity(
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = PLAYED)
+    val played: Boolean,
+    @ColumnInfo(name = IS_FAVORITE)
+    val isFavorite: Boolean,
+    @ColumnInfo(name = PLAYBACK_POSITION_TICKS)
+    val playbackPositionTicks: Long,
+    @ColumnInfo(name = PLAY_COUNT)
+    val playCount: Int,
+    @ColumnInfo(name = LAST_PLAYED_DATE)
+    val lastPlayedDate: Long?,
+    @ColumnInfo(name = MODIFIED_AT)
+    val modifiedAt: Long = System.currentTimeMillis(),
+) {
+    companion object Key {
+        const val TABLE_NAME = "library_user_data"
+        const val USER_ID = "user_id"
+        const val ITEM_ID = "item_id"
+        const val PLAYED = "played"
+        const val IS_FAVORITE = "is_favorite"
+        const val PLAYBACK_POSITION_TICKS = "playback_position_ticks"
+        const val PLAY_COUNT = "play_count"
+        const val LAST_PLAYED_DATE = "last_played_date"
+        const val MODIFIED_AT = "modified_at"
+    }
+}
@@ -0,0 +1,50 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity.Key.CACHED_AT
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity.Key.ITEM_ID
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity.Key.SEGMENTS
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity.Key.USER_ID
+import org.jellyfin.sdk.model.api.MediaSegmentDto
+import java.util.UUID
+
+/**
+ * Cached media segments of an item, an empty list means the item has no segments.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    primaryKeys = [USER_ID, ITEM_ID],
+    indices = [
+        Index(value = [CACHED_AT]),
+    ],
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class MediaSegmentCacheEntity(
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = SEGMENTS)
+    val segments: List<MediaSegmentDto>,
+    @ColumnInfo(name = CACHED_AT)
+    val cachedAt: Long = System.currentTimeMillis(),
+) {
+    companion object Key {
+        const val TABLE_NAME = "media_segment_cache"
+        const val USER_ID = "user_id"
+        const val ITEM_ID = "item_id"
+        const val SEGMENTS = "segments"
+        const val CACHED_AT = "cached_at"
+    }
+}
@@ -0,0 +1,66 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.ForeignKey
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.EVENT
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.FINISHED
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.ID
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.ITEM_ID
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.POSITION_TICKS
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.TABLE_NAME
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.TIMESTAMP
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity.Key.USER_ID
+import org.jellyfin.mobile.player.journal.PlaybackEvent
+import java.util.UUID
+
+/**
+ * Pending playback report that hasn't been acknowledged by the server yet.
+ */
+@Entity(
+    tableName = TABLE_NAME,
+    indices = [
+        Index(value = [USER_ID, ITEM_ID, EVENT]),
+    ],
+    foreignKeys = [
+        ForeignKey(
+            entity = UserEntity::class,
+            parentColumns = [UserEntity.ID],
+            childColumns = [USER_ID],
+            onDelete = ForeignKey.CASCADE,
+        ),
+    ],
+)
+data class PlaybackJournalEntity(
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = ID)
+    val id: Long,
+    @ColumnInfo(name = USER_ID)
+    val userId: Long,
+    @ColumnInfo(name = ITEM_ID)
+    val itemId: UUID,
+    @ColumnInfo(name = EVENT)
+    val event: PlaybackEvent,
+    @ColumnInfo(name = POSITION_TICKS)
+    val positionTicks: Long,
+    @ColumnInfo(name = FINISHED)
+    val finished: Boolean,
+    @ColumnInfo(name = TIMESTAMP)
+    val timestamp: Long,
+) {
+    constructor(userId: Long, itemId: UUID, event: PlaybackEvent, positionTicks: Long, finished: Boolean = false) :
+        this(0, userId, itemId, event, positionTicks, finished, System.currentTimeMillis())
+
+    companion object Key {
+        const val TABLE_NAME = "playback_journal"
+        const val ID = "id"
+        const val USER_ID = "user_id"
+        const val ITEM_ID = "item_id"
+        const val EVENT = "event"
+        const val POSITION_TICKS = "position_ticks"
+        const val FINISHED = "finished"
+        const val TIMESTAMP = "timestamp"
+    }
+}
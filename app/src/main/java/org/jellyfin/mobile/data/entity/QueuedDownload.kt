@@ -0,0 +1,16 @@
+package org.jellyfin.mobile.data.entity
+
+import androidx.room.ColumnInfo
+import java.util.UUID
+
+/**
+ * Lightweight projection of a queued [DownloadEntity] used for scheduling, without the item blob and files.
+ *
+ * Downloads don't store a URL, the download queue builds the file URLs from the [itemId].
+ */
+data class QueuedDownload(
+    @ColumnInfo(name = "id") val id: Long,
+    @ColumnInfo(name = "item_id") val itemId: UUID,
+    @ColumnInfo(name = "path") val path: String,
+    @ColumnInfo(name = "size") val size: Long,
+)
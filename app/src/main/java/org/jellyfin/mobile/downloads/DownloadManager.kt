@@ -9,8 +9,11 @@ import org.jellyfin.mobile.data.dao.DownloadDao
 import org.jellyfin.mobile.data.entity.DownloadEntity
 import org.jellyfin.mobile.data.entity.ServerEntity
 import org.jellyfin.mobile.data.entity.UserEntity
+import org.jellyfin.mobile.library.LibraryRepository
+import org.jellyfin.mobile.player.mediasegments.MediaSegmentRepository
 import org.jellyfin.sdk.api.client.ApiClient
 import org.jellyfin.sdk.api.client.extensions.itemsApi
+import org.jellyfin.sdk.model.api.BaseItemDto
 import org.jellyfin.sdk.model.api.ItemFields
 import java.util.UUID
 
@@ -20,6 +23,8 @@ class DownloadManager(
     private val downloadDao: DownloadDao,
     private val appPreferences: AppPreferences,
     private val storageManager: StorageManager,
+    private val libraryRepository: LibraryRepository,
+    private val mediaSegmentRepository: MediaSegmentRepository,
 ) {
     companion object {
         /**
@@ -60,6 +65,7 @@ class DownloadManager(
                         item = item,
                         status = DownloadStatus.QUEUED,
                         modifiedAt = System.currentTimeMillis(),
+                        expectedSize = item.expectedSize,
                     )
                     downloadDao.update(downloadEntity)
                 } else {
@@ -70,10 +76,17 @@ class DownloadManager(
                         itemId = item.id,
                         item = item,
                         path = item.name ?: item.id.toString(),
+                        expectedSize = item.expectedSize,
                     )
                     downloadDao.insert(downloadEntity)
                 }
             }
+
+            // Make downloaded items available to offline search
+            libraryRepository.indexItems(user.id, response.items)
+
+            // Keep skip actions available offline, stored segments of downloaded items aren't trimmed
+            mediaSegmentRepository.prefetchSegments(itemsChunk)
         }
 
         if (!DownloadWorker.isActive(context)) {
@@ -117,4 +130,7 @@ class DownloadManager(
             storageLocation?.findFile(download.path)?.delete()
         }
     }
+
+    private val BaseItemDto.expectedSize: Long
+        get() = mediaSources?.firstOrNull()?.size ?: 0L
 }
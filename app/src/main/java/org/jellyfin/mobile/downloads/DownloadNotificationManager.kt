@@ -4,11 +4,13 @@ import android.app.NotificationChannel
 import android.app.NotificationManager
 import android.content.Context
 import android.content.pm.ServiceInfo
+import android.text.format.Formatter
 import androidx.core.app.NotificationCompat
 import androidx.core.app.PendingIntentCompat
 import androidx.core.content.getSystemService
 import androidx.work.ForegroundInfo
 import org.jellyfin.mobile.R
+import org.jellyfin.mobile.data.entity.DownloadStats
 import org.jellyfin.mobile.utils.AndroidVersion
 
 class DownloadNotificationManager(
@@ -34,11 +36,21 @@ class DownloadNotificationManager(
         }
     }
 
-    fun createForegroundInfo() = ForegroundInfo(
+    fun createForegroundInfo(stats: DownloadStats = DownloadStats.Empty) = ForegroundInfo(
         67,
         NotificationCompat.Builder(context, CHANNEL_ID).apply {
             setContentTitle(context.getString(R.string.downloads))
             setSmallIcon(android.R.drawable.stat_sys_download)
+            if (stats.queuedCount > 0) {
+                setContentText(
+                    context.resources.getQuantityString(
+                        R.plurals.downloads_queued_summary,
+                        stats.queuedCount,
+                        stats.queuedCount,
+                        Formatter.formatShortFileSize(context, stats.remainingSize),
+                    ),
+                )
+            }
         }.build(),
         if (AndroidVersion.isAtLeastQ) ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC else 0,
     )
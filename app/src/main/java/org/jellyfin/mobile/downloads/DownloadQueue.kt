@@ -11,6 +11,7 @@ import org.jellyfin.mobile.app.StorageManager
 import org.jellyfin.mobile.data.dao.DownloadDao
 import org.jellyfin.mobile.data.entity.DownloadFileEntity
 import org.jellyfin.mobile.data.entity.DownloadFiles
+import org.jellyfin.mobile.data.entity.QueuedDownload
 import org.jellyfin.sdk.api.client.ApiClient
 import org.jellyfin.sdk.api.client.extensions.imageApi
 import org.jellyfin.sdk.api.client.extensions.libraryApi
@@ -28,8 +29,12 @@ class DownloadQueue(
 ) {
     private data class QueuedFile(val file: DownloadFileEntity, val remoteUri: Uri)
 
+    private companion object {
+        val QUEUED_STATES = setOf(DownloadStatus.QUEUED, DownloadStatus.DOWNLOADING)
+    }
+
     private val _downloader = FileDownloader(okHttpClient)
-    private val _downloads = mutableListOf<DownloadFiles>()
+    private val _downloads = mutableListOf<QueuedDownload>()
 
     suspend fun prepare(): Boolean {
         val queuedDownloads = downloadDao.getQueuedDownloads()
@@ -42,8 +47,12 @@ class DownloadQueue(
         while (_downloads.any()) {
             val iterator = _downloads.iterator()
             while (iterator.hasNext()) {
-                val downloadWithFiles = iterator.next()
-                process(downloadWithFiles)
+                val queuedDownload = iterator.next()
+                // Only load the full download once it is processed, it might have been cancelled in the meantime
+                val downloadWithFiles = downloadDao.getDownloadWithFiles(queuedDownload.id)
+                if (downloadWithFiles != null && downloadWithFiles.download.status in QUEUED_STATES) {
+                    process(downloadWithFiles)
+                }
                 iterator.remove()
             }
 
@@ -0,0 +1,20 @@
+package org.jellyfin.mobile.downloads
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.first
+import org.jellyfin.mobile.data.dao.DownloadDao
+import org.jellyfin.mobile.data.entity.DownloadStats
+
+/**
+ * Summaries of the downloads, aggregated in SQLite so that they don't require loading every download into memory.
+ *
+ * The flow is re-queried by Room whenever the download tables change, and only emits if the result changed.
+ */
+class DownloadStatsRepository(
+    downloadDao: DownloadDao,
+) {
+    val stats: Flow<DownloadStats> = downloadDao.getStats().distinctUntilChanged()
+
+    suspend fun getStats(): DownloadStats = stats.first()
+}
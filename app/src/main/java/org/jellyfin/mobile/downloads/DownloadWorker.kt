@@ -13,7 +13,10 @@ import androidx.work.WorkManager
 import androidx.work.WorkerParameters
 import androidx.work.await
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.drop
 import kotlinx.coroutines.guava.await
+import kotlinx.coroutines.launch
 import org.jellyfin.mobile.app.AppPreferences
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.inject
@@ -61,8 +64,10 @@ class DownloadWorker(
 
     private val downloadNotificationManager by inject<DownloadNotificationManager>()
     private val downloadQueue by inject<DownloadQueue>()
+    private val downloadStatsRepository by inject<DownloadStatsRepository>()
 
-    override suspend fun getForegroundInfo(): ForegroundInfo = downloadNotificationManager.createForegroundInfo()
+    override suspend fun getForegroundInfo(): ForegroundInfo =
+        downloadNotificationManager.createForegroundInfo(downloadStatsRepository.getStats())
 
     override suspend fun doWork(): Result {
         val canProcess = downloadQueue.prepare()
@@ -70,7 +75,16 @@ class DownloadWorker(
 
         setForeground(getForegroundInfo())
         return try {
-            downloadQueue.process()
+            coroutineScope {
+                // Keep the remaining downloads in the notification up to date
+                val statsJob = launch {
+                    downloadStatsRepository.stats.drop(1).collect { stats ->
+                        setForeground(downloadNotificationManager.createForegroundInfo(stats))
+                    }
+                }
+                downloadQueue.process()
+                statsJob.cancel()
+            }
             Result.success()
         } catch (e: CancellationException) {
             throw e
@@ -15,6 +15,7 @@ import org.jellyfin.mobile.app.StorageManager
 import org.jellyfin.mobile.data.dao.DownloadDao
 import org.jellyfin.mobile.data.entity.DownloadEntity
 import org.jellyfin.mobile.data.entity.DownloadFiles
+import org.jellyfin.mobile.data.entity.DownloadStats
 import org.jellyfin.mobile.events.ActivityEvent
 import org.jellyfin.mobile.events.ActivityEventHandler
 import org.jellyfin.mobile.player.interaction.PlayOptions
@@ -28,12 +29,16 @@ class DownloadsViewModel : ViewModel(), KoinComponent {
     private val downloadManager: DownloadManager by inject()
     private val activityEventHandler: ActivityEventHandler by inject()
     private val storageManager: StorageManager by inject()
+    private val downloadStatsRepository: DownloadStatsRepository by inject()
 
     val downloads: StateFlow<List<DownloadFiles>> = downloadDao
         .getAllDownloadsWithFiles()
         .flowOn(Dispatchers.IO)
         .stateIn(viewModelScope, SharingStarted.WhileSubscribed(), emptyList())
 
+    val stats: StateFlow<DownloadStats> = downloadStatsRepository.stats
+        .stateIn(viewModelScope, SharingStarted.WhileSubscribed(), DownloadStats.Empty)
+
     private val _storageLocation = MutableStateFlow(storageManager.getStorageLocation())
     val storageLocation = _storageLocation.asStateFlow()
 
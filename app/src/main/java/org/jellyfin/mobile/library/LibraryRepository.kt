@@ -0,0 +1,356 @@
+package org.jellyfin.mobile.library
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.data.dao.DownloadDao
+import org.jellyfin.mobile.data.dao.LibraryDao
+import org.jellyfin.mobile.data.entity.LibraryItemEntity
+import org.jellyfin.mobile.data.entity.LibrarySearchEntity
+import org.jellyfin.mobile.data.entity.LibrarySearchMatch
+import org.jellyfin.mobile.data.entity.LibrarySyncEntity
+import org.jellyfin.mobile.data.entity.LibraryUserDataEntity
+import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
+import org.jellyfin.sdk.api.client.extensions.itemsApi
+import org.jellyfin.sdk.api.client.extensions.userLibraryApi
+import org.jellyfin.sdk.model.api.BaseItemDto
+import org.jellyfin.sdk.model.api.BaseItemDtoQueryResult
+import org.jellyfin.sdk.model.api.BaseItemKind
+import org.jellyfin.sdk.model.api.ItemFields
+import org.jellyfin.sdk.model.api.ItemSortBy
+import timber.log.Timber
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.hours
+
+/**
+ * Offline-first access to library metadata.
+ *
+ * Reads are served from the local cache whenever possible and revalidated in the background once the cached copy is
+ * older than the requested max age (stale-while-revalidate). Network results are written through to the cache, which
+ * makes it usable as a fallback for the native code paths when the server is slow or unreachable.
+ */
+@Suppress("TooManyFunctions")
+class LibraryRepository(
+    private val apiClient: ApiClient,
+    private val appPreferences: AppPreferences,
+    private val libraryDao: LibraryDao,
+    private val downloadDao: DownloadDao,
+) {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val revalidationJobs = ConcurrentHashMap<UUID, Job>()
+
+    private val currentUserId: Long?
+        get() = appPreferences.currentUserId
+
+    /**
+     * Get the complete item with [itemId], preferring the cached copy.
+     *
+     * If the cached copy is older than [maxAge] or changed on the server, it is returned as is and refreshed in the background.
+     * Only hits the network directly if the item isn't cached at all.
+     */
+    suspend fun getItem(itemId: UUID, maxAge: Duration = DEFAULT_MAX_AGE): BaseItemDto? {
+        val userId = currentUserId ?: return fetchItem(itemId)
+        val cached = getCachedItem(userId, itemId) ?: return fetchItem(itemId)
+
+        val changed = cached.dateLastSaved?.let { dateLastSaved -> dateLastSaved > cached.cachedAt } == true
+        if (changed || System.currentTimeMillis() - cached.cachedAt > maxAge.inWholeMilliseconds) {
+            revalidate(itemId)
+        }
+
+        return cached.toItem(userId)
+    }
+
+    /**
+     * Get the complete item with [itemId] from the server, falling back to the cached copy if the request fails.
+     */
+    suspend fun fetchItem(itemId: UUID): BaseItemDto? {
+        val item = try {
+            withContext(Dispatchers.IO) {
+                apiClient.userLibraryApi.getItem(itemId).content
+            }
+        } catch (e: ApiClientException) {
+            Timber.e(e, "Failed to load item $itemId, using cached copy")
+            return getCachedItem(itemId)
+        }
+
+        currentUserId?.let { userId -> cacheItems(userId, listOf(item), complete = true) }
+        return item
+    }
+
+    /**
+     * Get the cached copy of the item with [itemId], if available.
+     */
+    suspend fun getCachedItem(itemId: UUID): BaseItemDto? {
+        val userId = currentUserId ?: return null
+        return getCachedItem(userId, itemId)?.toItem(userId)
+    }
+
+    /**
+     * Observe the cached copy of the item with [itemId].
+     */
+    fun observeItem(itemId: UUID): Flow<BaseItemDto?>? {
+        val userId = currentUserId ?: return null
+        return libraryDao.observeItem(userId, itemId).map { entity -> entity?.item }
+    }
+
+    /**
+     * Get the cached children of [parentId] in their original order.
+     */
+    suspend fun getCachedChildren(parentId: UUID, offset: Int, limit: Int): List<BaseItemDto> {
+        val userId = currentUserId ?: return emptyList()
+        val entities = withContext(Dispatchers.IO) {
+            libraryDao.getChildren(userId, parentId, offset, limit)
+        }
+        return entities.overlayUserData(userId)
+    }
+
+    /**
+     * Search the cached and downloaded items of the current user for [query], ordered by relevance.
+     *
+     * Every word of [query] is matched as a prefix, case and diacritics are ignored.
+     */
+    suspend fun search(query: String, kinds: Collection<BaseItemKind>, limit: Int): List<BaseItemDto> {
+        val userId = currentUserId ?: return emptyList()
+        val matchQuery = query.split(SEARCH_TERM_DELIMITER)
+            .filter(String::isNotEmpty)
+            .joinToString(" ") { term -> "$term*" }
+        if (matchQuery.isEmpty()) return emptyList()
+
+        return withContext(Dispatchers.IO) {
+            val itemIds = libraryDao.search(userId, matchQuery, kinds.map(BaseItemKind::serialName))
+                .sortedByDescending(LibrarySearchMatch::score)
+                .take(limit)
+                .map(LibrarySearchMatch::itemId)
+            if (itemIds.isEmpty()) return@withContext emptyList()
+
+            val cachedItems = libraryDao.getItems(userId, itemIds).overlayUserData(userId).associateBy(BaseItemDto::id)
+            val downloadedItems = downloadDao.getDownloadsByItemIds(itemIds.filterNot(cachedItems::containsKey))
+                .filter { download -> download.userId == userId }
+                .associate { download -> download.itemId to download.item }
+            itemIds.mapNotNull { itemId -> cachedItems[itemId] ?: downloadedItems[itemId] }
+        }
+    }
+
+    /**
+     * Add the [items] downloaded by [userId] to the search index.
+     */
+    suspend fun indexItems(userId: Long, items: List<BaseItemDto>) = withContext(Dispatchers.IO) {
+        libraryDao.indexItems(userId, items.map { item -> item.toSearchEntity(userId) })
+    }
+
+    /**
+     * Store the partial [items] returned by a list query in the cache.
+     *
+     * @param parentId if set, [items] are stored as the children of [parentId], starting at [offset].
+     * @param endOfList whether [items] is the last page of children of [parentId].
+     */
+    suspend fun cacheItems(
+        items: List<BaseItemDto>,
+        parentId: UUID? = null,
+        offset: Int = 0,
+        endOfList: Boolean = false,
+    ) {
+        val userId = currentUserId ?: return
+        cacheItems(userId, items, complete = false)
+        if (parentId != null) {
+            withContext(Dispatchers.IO) {
+                libraryDao.replaceChildren(userId, parentId, offset, items.map(BaseItemDto::id), endOfList)
+            }
+        }
+    }
+
+    /**
+     * Run an incremental sync of all items changed since the last sync of [userId].
+     *
+     * The first sync only records the watermark, items are cached on demand until then.
+     */
+    suspend fun sync(api: ApiClient, userId: Long) {
+        val syncStart = System.currentTimeMillis()
+        val lastSync = withContext(Dispatchers.IO) { libraryDao.getSyncState(userId) }
+
+        if (lastSync != null) {
+            val since = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSync.lastSyncTimestamp), ZoneOffset.UTC)
+            // Both filters are combined with AND by the server, so changed items and changed user data need separate queries
+            val itemsSynced = syncPages(userId, syncStart) { startIndex ->
+                api.itemsApi.getItems(
+                    recursive = true,
+                    minDateLastSaved = since,
+                    sortBy = SYNC_SORT_ORDER,
+                    fields = SYNC_FIELDS,
+                    startIndex = startIndex,
+                    limit = SYNC_PAGE_SIZE,
+                ).content
+            }
+            val userDataSynced = syncPages(userId, syncStart) { startIndex ->
+                api.itemsApi.getItems(
+                    recursive = true,
+                    minDateLastSavedForUser = since,
+                    sortBy = SYNC_SORT_ORDER,
+                    fields = SYNC_FIELDS,
+                    startIndex = startIndex,
+                    limit = SYNC_PAGE_SIZE,
+                ).content
+            }
+            if (!itemsSynced || !userDataSynced) {
+                Timber.w("Library changed while syncing, keeping the previous sync watermark")
+                return
+            }
+        }
+
+        withContext(Dispatchers.IO) {
+            libraryDao.insertSyncState(LibrarySyncEntity(userId, syncStart))
+        }
+    }
+
+    /**
+     * Cache all pages of changed items returned by [getPage].
+     *
+     * @return false if the number of results changed while paging, in which case items might have been skipped.
+     */
+    private suspend fun syncPages(
+        userId: Long,
+        syncStart: Long,
+        getPage: suspend (startIndex: Int) -> BaseItemDtoQueryResult,
+    ): Boolean {
+        var startIndex = 0
+        var totalRecordCount: Int? = null
+        do {
+            val result = getPage(startIndex)
+            if (totalRecordCount != null && result.totalRecordCount != totalRecordCount) return false
+            totalRecordCount = result.totalRecordCount
+            cacheItems(userId, result.items, complete = false, dateLastSaved = syncStart)
+            startIndex += result.items.size
+        } while (result.items.isNotEmpty() && startIndex < result.totalRecordCount)
+        Timber.d("Synced %d changed library items", startIndex)
+        return true
+    }
+
+    /**
+     * Remove all cached items that haven't been refreshed within [maxAge].
+     */
+    suspend fun trim(maxAge: Duration) = withContext(Dispatchers.IO) {
+        libraryDao.deleteItemsCachedBefore(System.currentTimeMillis() - maxAge.inWholeMilliseconds)
+        libraryDao.pruneSearchIndex()
+    }
+
+    private fun revalidate(itemId: UUID) {
+        val job = scope.launch(start = CoroutineStart.LAZY) { fetchItem(itemId) }
+        if (revalidationJobs.putIfAbsent(itemId, job) != null) {
+            // Already revalidating
+            job.cancel()
+            return
+        }
+        job.invokeOnCompletion { revalidationJobs.remove(itemId, job) }
+        job.start()
+    }
+
+    private suspend fun getCachedItem(userId: Long, itemId: UUID): LibraryItemEntity? = withContext(Dispatchers.IO) {
+        libraryDao.getItem(userId, itemId)?.takeIf(LibraryItemEntity::complete)
+    }
+
+    private suspend fun cacheItems(
+        userId: Long,
+        items: List<BaseItemDto>,
+        complete: Boolean,
+        dateLastSaved: Long? = null,
+    ) {
+        if (items.isEmpty()) return
+        val itemEntities = items.map { item ->
+            LibraryItemEntity(
+                userId = userId,
+                itemId = item.id,
+                parentId = item.parentId,
+                item = item,
+                complete = complete,
+                dateLastSaved = dateLastSaved,
+            )
+        }
+        val userDataEntities = items.mapNotNull { item ->
+            val userData = item.userData ?: return@mapNotNull null
+            LibraryUserDataEntity(
+                userId = userId,
+                itemId = item.id,
+                played = userData.played,
+                isFavorite = userData.isFavorite,
+                playbackPositionTicks = userData.playbackPositionTicks,
+                playCount = userData.playCount,
+                lastPlayedDate = userData.lastPlayedDate?.toInstant(ZoneOffset.UTC)?.toEpochMilli(),
+            )
+        }
+
+        withContext(Dispatchers.IO) {
+            when {
+                complete -> libraryDao.insertItems(itemEntities)
+                // Synced items only contain the sync fields, complete copies are marked as changed instead
+                dateLastSaved != null -> libraryDao.insertChangedItems(userId, itemEntities, dateLastSaved)
+                else -> libraryDao.insertPartialItems(userId, itemEntities)
+            }
+            libraryDao.insertUserData(userDataEntities)
+            libraryDao.indexItems(userId, items.map { item -> item.toSearchEntity(userId) })
+        }
+    }
+
+    private fun BaseItemDto.toSearchEntity(userId: Long) = LibrarySearchEntity(
+        userId = userId,
+        itemId = id,
+        kind = type.serialName,
+        name = name,
+        seriesName = seriesName,
+        album = album,
+        artists = artists?.joinToString(", "),
+        overview = overview,
+    )
+
+    private suspend fun LibraryItemEntity.toItem(userId: Long): BaseItemDto = listOf(this).overlayUserData(userId).first()
+
+    /**
+     * Apply the cached user data, which might be more recent than the one embedded in the item.
+     */
+    private suspend fun List<LibraryItemEntity>.overlayUserData(userId: Long): List<BaseItemDto> {
+        if (isEmpty()) return emptyList()
+        val userData = withContext(Dispatchers.IO) {
+            libraryDao.getUserData(userId, map(LibraryItemEntity::itemId))
+        }.associateBy(LibraryUserDataEntity::itemId)
+
+        return map { entity ->
+            val item = entity.item
+            val data = userData[entity.itemId] ?: return@map item
+            item.copy(
+                userData = item.userData?.copy(
+                    played = data.played,
+                    isFavorite = data.isFavorite,
+                    playbackPositionTicks = data.playbackPositionTicks,
+                    playCount = data.playCount,
+                    lastPlayedDate = data.lastPlayedDate?.let { timestamp ->
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneOffset.UTC)
+                    },
+                ),
+            )
+        }
+    }
+
+    companion object {
+        val DEFAULT_MAX_AGE = 1.hours
+        private const val SYNC_PAGE_SIZE = 500
+        private val SYNC_FIELDS = listOf(ItemFields.PARENT_ID, ItemFields.OVERVIEW)
+
+        /**
+         * The creation date never changes and new items are appended, which keeps offset paging stable.
+         */
+        private val SYNC_SORT_ORDER = listOf(ItemSortBy.DATE_CREATED, ItemSortBy.SORT_NAME)
+        private val SEARCH_TERM_DELIMITER = Regex("[^\\p{L}\\p{N}]+")
+    }
+}
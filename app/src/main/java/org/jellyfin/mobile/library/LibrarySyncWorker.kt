@@ -0,0 +1,89 @@
+package org.jellyfin.mobile.library
+
+import android.content.Context
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.PeriodicWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.await
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.app.ApiClientController
+import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.player.mediasegments.MediaSegmentRepository
+import org.jellyfin.sdk.api.client.exception.ApiClientException
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+import kotlin.time.Duration.Companion.days
+
+/**
+ * Periodically pulls library changes of the current user into the local cache,
+ * along with the media segments of the items to continue watching.
+ */
+class LibrarySyncWorker(
+    context: Context,
+    parameters: WorkerParameters,
+) : CoroutineWorker(context, parameters), KoinComponent {
+    companion object {
+        private val tag = LibrarySyncWorker::class.qualifiedName!!
+        private const val SYNC_INTERVAL_HOURS = 6L
+        private val CACHE_MAX_AGE = 30.days
+
+        suspend fun start(context: Context) {
+            val request = PeriodicWorkRequestBuilder<LibrarySyncWorker>(SYNC_INTERVAL_HOURS, TimeUnit.HOURS).apply {
+                addTag(tag)
+                setConstraints(
+                    Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .setRequiresBatteryNotLow(true)
+                        .build(),
+                )
+            }.build()
+
+            WorkManager.getInstance(context).enqueueUniquePeriodicWork(tag, ExistingPeriodicWorkPolicy.KEEP, request).await()
+        }
+
+        suspend fun stop(context: Context) {
+            WorkManager.getInstance(context).cancelUniqueWork(tag).await()
+        }
+    }
+
+    private val appPreferences by inject<AppPreferences>()
+    private val apiClientController by inject<ApiClientController>()
+    private val libraryRepository by inject<LibraryRepository>()
+    private val mediaSegmentRepository by inject<MediaSegmentRepository>()
+
+    override suspend fun doWork(): Result {
+        val serverId = appPreferences.currentServerId ?: return Result.success()
+        val userId = appPreferences.currentUserId ?: return Result.success()
+
+        return try {
+            val api = withContext(Dispatchers.IO) { apiClientController.getApiClient(serverId, userId) }
+            libraryRepository.sync(api, userId)
+            libraryRepository.trim(CACHE_MAX_AGE)
+            // Segments are only prefetched, failing to do so shouldn't retry the whole sync
+            runCatching {
+                mediaSegmentRepository.sync(api, userId)
+                mediaSegmentRepository.trim(CACHE_MAX_AGE)
+            }.onFailure { e ->
+                if (e is CancellationException) throw e
+                Timber.e(e, "Media segment sync failed")
+            }
+            Result.success()
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: ApiClientException) {
+            Timber.e(e, "Library sync failed")
+            Result.retry()
+        } catch (e: IllegalStateException) {
+            Timber.e(e, "Library sync failed")
+            Result.failure()
+        }
+    }
+}
@@ -6,6 +6,7 @@ import android.media.AudioAttributes
 import android.media.AudioManager
 import android.media.session.MediaSession
 import android.media.session.PlaybackState
+import android.os.SystemClock
 import androidx.core.content.getSystemService
 import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.LiveData
@@ -13,17 +14,24 @@ import androidx.lifecycle.MutableLiveData
 import androidx.lifecycle.ProcessLifecycleOwner
 import androidx.lifecycle.viewModelScope
 import androidx.media3.common.C
+import androidx.media3.common.MediaItem
 import androidx.media3.common.MimeTypes
 import androidx.media3.common.PlaybackException
 import androidx.media3.common.Player
+import androidx.media3.common.Tracks
 import androidx.media3.common.util.Clock
 import androidx.media3.exoplayer.DefaultLoadControl
 import androidx.media3.exoplayer.DefaultRenderersFactory
 import androidx.media3.exoplayer.ExoPlayer
+import androidx.media3.exoplayer.PlayerMessage
+import androidx.media3.exoplayer.SeekParameters
+import androidx.media3.exoplayer.analytics.AnalyticsListener
 import androidx.media3.exoplayer.analytics.DefaultAnalyticsCollector
 import androidx.media3.exoplayer.mediacodec.MediaCodecDecoderException
 import androidx.media3.exoplayer.mediacodec.MediaCodecInfo
 import androidx.media3.exoplayer.mediacodec.MediaCodecSelector
+import androidx.media3.exoplayer.source.LoadEventInfo
+import androidx.media3.exoplayer.source.MediaLoadData
 import androidx.media3.exoplayer.source.MediaSource
 import androidx.media3.exoplayer.trackselection.DefaultTrackSelector
 import androidx.media3.exoplayer.util.EventLogger
@@ -31,22 +39,31 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.Channel
-import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.jellyfin.mobile.BuildConfig
 import org.jellyfin.mobile.R
 import org.jellyfin.mobile.app.AppPreferences
 import org.jellyfin.mobile.app.PLAYER_EVENT_CHANNEL
+import org.jellyfin.mobile.player.bandwidth.BandwidthEstimateStore
+import org.jellyfin.mobile.player.buffer.AdaptiveLoadControl
+import org.jellyfin.mobile.player.buffer.SkipAwareLoadControl
 import org.jellyfin.mobile.player.interaction.PlayerEvent
 import org.jellyfin.mobile.player.interaction.PlayerLifecycleObserver
 import org.jellyfin.mobile.player.interaction.PlayerMediaSessionCallback
 import org.jellyfin.mobile.player.interaction.PlayerNotificationHelper
+import org.jellyfin.mobile.player.journal.PlaybackEvent
+import org.jellyfin.mobile.player.journal.PlaybackJournal
 import org.jellyfin.mobile.player.mediasegments.MediaSegmentAction
 import org.jellyfin.mobile.player.mediasegments.MediaSegmentRepository
+import org.jellyfin.mobile.player.qoe.PlaybackSessionCollector
+import org.jellyfin.mobile.player.qualityoptions.QualityOptionsProvider
+import org.jellyfin.mobile.player.qualityoptions.TranscodeBitrateController
 import org.jellyfin.mobile.player.queue.QueueManager
 import org.jellyfin.mobile.player.source.JellyfinMediaSource
 import org.jellyfin.mobile.player.source.RemoteJellyfinMediaSource
+import org.jellyfin.mobile.player.startup.StartupTracer
+import org.jellyfin.mobile.player.timeline.PlaybackTimelineScheduler
 import org.jellyfin.mobile.player.ui.DecoderType
 import org.jellyfin.mobile.player.ui.DisplayPreferences
 import org.jellyfin.mobile.player.ui.PlayState
@@ -77,6 +94,7 @@ import org.jellyfin.sdk.api.operations.PlayStateApi
 import org.jellyfin.sdk.api.operations.UserApi
 import org.jellyfin.sdk.model.api.ChapterInfo
 import org.jellyfin.sdk.model.api.MediaSegmentDto
+import org.jellyfin.sdk.model.api.MediaSegmentType
 import org.jellyfin.sdk.model.api.PlayMethod
 import org.jellyfin.sdk.model.api.PlaybackOrder
 import org.jellyfin.sdk.model.api.PlaybackProgressInfo
@@ -90,6 +108,8 @@ import org.koin.core.component.get
 import org.koin.core.component.inject
 import org.koin.core.qualifier.named
 import timber.log.Timber
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.time.Duration
 import kotlin.time.Duration.Companion.milliseconds
@@ -110,10 +130,15 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     // Media source handling
     private val trackSelector = DefaultTrackSelector(getApplication())
     val trackSelectionHelper = TrackSelectionHelper(this, trackSelector)
+    val startupTracer = StartupTracer(get())
+    private val playbackSessionCollector = PlaybackSessionCollector(get(), get(), get())
     val queueManager = QueueManager(this)
     val mediaSourceOrNull: JellyfinMediaSource?
         get() = queueManager.getCurrentMediaSourceOrNull()
     private val mediaSegmentRepository: MediaSegmentRepository by inject()
+    private val playbackJournal: PlaybackJournal by inject()
+    private val bandwidthEstimateStore: BandwidthEstimateStore by inject()
+    private val qualityOptionsProvider: QualityOptionsProvider by inject()
 
     // ExoPlayer
     private val _player = MutableLiveData<ExoPlayer?>()
@@ -122,13 +147,23 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     val player: LiveData<ExoPlayer?> get() = _player
     val playerState: LiveData<Int> get() = _playerState
     val decoderType: LiveData<DecoderType> get() = _decoderType
+    private var adaptiveLoadControl: AdaptiveLoadControl? = null
+    private var transcodeBitrateController: TranscodeBitrateController? = null
+    private var timelineScheduler: PlaybackTimelineScheduler? = null
 
     // Player Menus
     private var playerMenuHelper: PlayerMenuHelper? = null
 
+    // Chapter start positions of the current item
+    private var chapterStartPositions: List<Duration> = emptyList()
+
     // Media Segments Ask to Skip
     private var askToSkipMediaSegments: List<MediaSegmentDto> = emptyList()
 
+    // Automatically skipped regions in microseconds by item id, read by the load control on the playback thread.
+    // Queue items report the item id as media id of their windows, also for downloads.
+    private val skipRegions = ConcurrentHashMap<String, List<LongRange>>()
+
     private val _error = MutableLiveData<String>()
     val error: LiveData<String> = _error
 
@@ -137,10 +172,15 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     private val initialTracksSelected = AtomicBoolean(false)
     private var fallbackPreferExtensionRenderers = false
     private var playSpeed = 1f
+    private var previousItemPosition: Duration? = null
+    private var pendingHandoff: PendingHandoff? = null
+    private var isHandingOff = false
+
+    // Scrubbing
+    private var isScrubbing = false
+    private var scrubStartPositionMs = 0L
+    private var lastScrubPreviewMs = 0L
 
-    private var progressUpdateJob: Job? = null
-    private var chapterMarkingUpdateJob: Job? = null
-    private var skipMediaSegmentUpdateJob: Job? = null
     private var fallbackRetryJob: Job? = null
 
     /**
@@ -199,6 +239,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                     userApi.getCurrentUser().content.configuration
                 }
                 autoPlayNextEpisodeEnabled = userConfig?.enableNextEpisodeAutoPlay ?: false
+                playerOrNull?.pauseAtEndOfMediaItems = !autoPlayNextEpisodeEnabled
             } catch (e: ApiClientException) {
                 Timber.e(e, "Failed to load auto play preference")
             }
@@ -229,6 +270,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
      * Setup a new [ExoPlayer] for video playback, register callbacks and set attributes
      */
     fun setupPlayer() {
+        // Transcodes are delivered at the pace of the encoder, their throughput says little about the connection
+        val bandwidthMeter = bandwidthEstimateStore.createBandwidthMeter(getApplication()) {
+            mediaSourceOrNull?.playMethod != PlayMethod.TRANSCODE
+        }
         @Suppress("MagicNumber")
         val loadControl = when (appPreferences.exoPlayerNetworkBuffer) {
             Constants.NETWORK_BUFFER_LARGE -> DefaultLoadControl.Builder()
@@ -237,8 +282,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
             Constants.NETWORK_BUFFER_EXTRA_LARGE -> DefaultLoadControl.Builder()
                 .setBufferDurationsMs(80_000, 240_000, 5_000, 10_000)
                 .build()
-            else -> DefaultLoadControl()
+            else -> AdaptiveLoadControl(getApplication(), bandwidthMeter)
         }
+        adaptiveLoadControl = loadControl as? AdaptiveLoadControl
+        val skipAwareLoadControl = SkipAwareLoadControl(loadControl, skipRegions::get)
         val renderersFactory = DefaultRenderersFactory(getApplication()).apply {
             setEnableDecoderFallback(true) // Fallback only works if initialization fails, not decoding at playback time
             val rendererMode = when {
@@ -273,15 +320,39 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                 filteredDecoderList
             }
         }
-        _player.value = ExoPlayer.Builder(getApplication(), renderersFactory, get()).apply {
+        val player = ExoPlayer.Builder(getApplication(), renderersFactory, get()).apply {
             setUsePlatformDiagnostics(false)
             setTrackSelector(trackSelector)
             setAnalyticsCollector(analyticsCollector)
-            setLoadControl(loadControl)
+            setLoadControl(skipAwareLoadControl)
+            setBandwidthMeter(startupTracer.wrapBandwidthMeter(bandwidthMeter))
         }.build().apply {
             addListener(this@PlayerViewModel)
+            addAnalyticsListener(startupTracer)
+            addAnalyticsListener(playbackSessionCollector)
+            addAnalyticsListener(HandoffLoadListener())
+            pauseAtEndOfMediaItems = !autoPlayNextEpisodeEnabled
             applyDefaultAudioAttributes(C.AUDIO_CONTENT_TYPE_MOVIE)
         }
+        _player.value = player
+
+        transcodeBitrateController?.release()
+        transcodeBitrateController = TranscodeBitrateController(
+            player = player,
+            bandwidthMeter = bandwidthMeter,
+            qualityOptionsProvider = qualityOptionsProvider,
+            getPersistedEstimate = bandwidthEstimateStore::getEstimate,
+            scope = viewModelScope,
+            getMediaSource = { mediaSourceOrNull },
+            isAutoQuality = { queueManager.maxStreamingBitrate == null },
+            changeBitrate = { bitrate -> queueManager.adaptBitrate(bitrate) },
+        ).also { controller ->
+            player.addListener(controller)
+            player.addAnalyticsListener(controller)
+        }
+
+        timelineScheduler?.clear()
+        timelineScheduler = PlaybackTimelineScheduler(player, viewModelScope).also(player::addListener)
     }
 
     /**
@@ -291,6 +362,13 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         notificationHelper.dismissNotification()
         mediaSession.isActive = false
         mediaSession.release()
+        cancelHandoff()
+        cancelScrubbing()
+        startupTracer.cancel()
+        transcodeBitrateController?.release()
+        transcodeBitrateController = null
+        timelineScheduler?.clear()
+        timelineScheduler = null
         playerOrNull?.run {
             removeListener(this@PlayerViewModel)
             release()
@@ -298,68 +376,201 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         _player.value = null
     }
 
-    fun load(jellyfinMediaSource: JellyfinMediaSource, exoMediaSource: MediaSource, playWhenReady: Boolean) {
+    /**
+     * Load the [playlist] of the queue into the player and start playback of [jellyfinMediaSource] at [startIndex].
+     */
+    fun load(jellyfinMediaSource: JellyfinMediaSource, playlist: List<MediaSource>, startIndex: Int, playWhenReady: Boolean) {
         val player = playerOrNull ?: return
 
-        player.setMediaSource(exoMediaSource)
+        cancelHandoff()
+        cancelScrubbing()
+        player.setMediaSources(playlist, startIndex, jellyfinMediaSource.startTime.inWholeMilliseconds)
         player.prepare()
+        startupTracer.onPrepare()
 
         initialTracksSelected.set(false)
 
-        val startTime = jellyfinMediaSource.startTime
-        if (startTime > Duration.ZERO) player.seekTo(startTime.inWholeMilliseconds)
+        player.playWhenReady = playWhenReady
+
+        onMediaSourceStarted(jellyfinMediaSource)
+    }
+
+    /**
+     * Called once [jellyfinMediaSource] became the current item, either by loading it or by a transition of the playlist.
+     */
+    fun onMediaSourceStarted(jellyfinMediaSource: JellyfinMediaSource) {
+        val player = playerOrNull ?: return
 
+        adaptiveLoadControl?.onMediaSourceStarted(jellyfinMediaSource)
+        playbackSessionCollector.onMediaSourceStarted(jellyfinMediaSource)
+        transcodeBitrateController?.onMediaSourceStarted(jellyfinMediaSource)
+        scheduleTimeline(jellyfinMediaSource)
         applyMediaSegments(jellyfinMediaSource)
 
-        player.playWhenReady = playWhenReady
+        // Resolve the next item ahead of time, moved forward to the outro once segments are loaded
+        val runTime = jellyfinMediaSource.runTime
+        if (runTime > Constants.PRELOAD_NEXT_ITEM_THRESHOLD_MS.milliseconds) {
+            addPreloadNextAction(runTime - Constants.PRELOAD_NEXT_ITEM_THRESHOLD_MS.milliseconds)
+        }
 
         mediaSession.setMetadata(jellyfinMediaSource.toMediaMetadata())
 
-        if (jellyfinMediaSource is RemoteJellyfinMediaSource) {
-            viewModelScope.launch {
-                player.reportPlaybackStart(jellyfinMediaSource)
-            }
+        viewModelScope.launch {
+            player.reportPlaybackStart(jellyfinMediaSource)
         }
     }
 
-    private fun startProgressUpdates() {
-        if (mediaSourceOrNull != null && mediaSourceOrNull !is RemoteJellyfinMediaSource) return
-        progressUpdateJob = viewModelScope.launch {
-            while (true) {
-                delay(Constants.PLAYER_TIME_UPDATE_RATE)
-                playerOrNull?.reportPlaybackState()
-            }
-        }
+    /**
+     * Switch to the item at [index] of the playlist.
+     *
+     * @return true if the player has an item at [index].
+     */
+    fun seekToQueueItem(index: Int): Boolean {
+        val player = playerOrNull ?: return false
+        cancelHandoff()
+        if (index !in 0 until player.mediaItemCount) return false
+        player.seekToDefaultPosition(index)
+        return true
     }
 
-    private fun stopProgressUpdates() {
-        progressUpdateJob?.cancel()
+    /**
+     * Replace the item at [index] of the playlist with [mediaSource].
+     */
+    fun replaceQueueItem(index: Int, mediaSource: MediaSource) {
+        val player = playerOrNull ?: return
+        cancelHandoff()
+        player.removeMediaItem(index)
+        player.addMediaSource(index, mediaSource)
     }
 
-    private fun startChapterMarkingUpdates() {
-        chapterMarkingUpdateJob = viewModelScope.launch {
-            while (true) {
-                delay(Constants.CHAPTER_MARKING_UPDATE_DELAY)
-                playerOrNull?.setWatchedChapterMarkings()
+    /**
+     * The position at which a new play session of the current item should take over.
+     *
+     * While playing, it's a bit ahead of the current position, so that the new session can be prepared in the meantime.
+     */
+    fun getHandoffPosition(): Duration? {
+        val player = playerOrNull ?: return null
+        val position = player.contentPosition
+        if (!player.isPlaying) return position.milliseconds
+
+        val handoffPosition = position + Constants.SEAMLESS_SWITCH_LEAD_MS
+        val duration = player.contentDuration
+        return when {
+            duration != C.TIME_UNSET && handoffPosition >= duration -> position
+            else -> handoffPosition
+        }.milliseconds
+    }
+
+    /**
+     * Hand playback of the item at [index] over to [mediaSource], a new play session of the same item,
+     * without stopping the current one first.
+     *
+     * The new source is added behind the current one and preloaded from [position] while the current one keeps playing.
+     * Playback switches over once it reaches [position] and the new source is buffered there,
+     * or right away if the user seeks or playback is paused.
+     *
+     * @param mediaSource the new source, its default position needs to be [position].
+     * @param onCompleted called with true once the new source is playing, or with false if the handoff was cancelled.
+     * @return true if the handoff was scheduled.
+     */
+    fun handOffQueueItem(index: Int, mediaSource: MediaSource, position: Duration, onCompleted: (Boolean) -> Unit): Boolean {
+        val player = playerOrNull ?: return false
+        if (player.currentMediaItemIndex != index) return false
+
+        cancelHandoff()
+        val handoff = PendingHandoff(index, position.inWholeMilliseconds, onCompleted)
+        pendingHandoff = handoff
+
+        // Either paused or already past the handoff position, e.g. because resolving took longer than expected
+        if (!player.isPlaying || player.contentPosition >= handoff.positionMs) {
+            player.addMediaSource(index + 1, mediaSource)
+            completeHandoff(handoff, player.contentPosition)
+            return true
+        }
+
+        // Otherwise, the player only starts loading the next item once the current one is buffered completely
+        player.preloadConfiguration = ExoPlayer.PreloadConfiguration(Constants.SEAMLESS_SWITCH_PRELOAD_MS * 1000)
+        player.addMediaSource(index + 1, mediaSource)
+
+        handoff.message = player
+            .createMessage { _, _ ->
+                viewModelScope.launch(Dispatchers.Main) {
+                    if (pendingHandoff === handoff) {
+                        handoff.isDue = true
+                        maybeCompleteHandoff(handoff)
+                    }
+                }
             }
+            .setPosition(index, handoff.positionMs)
+            .send()
+        return true
+    }
+
+    /**
+     * Switch over once the handoff position was reached and the new source is buffered there.
+     * Until then, the current source keeps playing.
+     */
+    private fun maybeCompleteHandoff(handoff: PendingHandoff) {
+        val player = playerOrNull ?: return
+        if (!handoff.isDue || !handoff.isBuffered) return
+
+        // Only the preloaded position reuses the buffer, a later one has to be buffered again anyway
+        val positionMs = when {
+            player.contentPosition - handoff.positionMs <= Constants.SEAMLESS_SWITCH_POSITION_TOLERANCE_MS -> handoff.positionMs
+            else -> player.contentPosition
         }
+        completeHandoff(handoff, positionMs)
     }
 
-    private fun stopChapterMarkingUpdates() {
-        chapterMarkingUpdateJob?.cancel()
+    private fun completeHandoff(handoff: PendingHandoff, positionMs: Long) {
+        val player = playerOrNull ?: return
+        pendingHandoff = null
+        handoff.message?.cancel()
+        player.preloadConfiguration = ExoPlayer.PreloadConfiguration.DEFAULT
+
+        isHandingOff = true
+        player.seekTo(handoff.index + 1, positionMs)
+        player.removeMediaItem(handoff.index)
+        isHandingOff = false
+
+        // The previous play session ends here, the new one is reported as started by the queue manager
+        mediaSourceOrNull?.let { mediaSource -> stopPlaySession(mediaSource, hasFinished = false, positionMs.milliseconds) }
+
+        previousItemPosition = null
+        initialTracksSelected.set(false)
+        handoff.onCompleted(true)
     }
 
-    private fun startSkipMediaSegmentUpdates() {
-        skipMediaSegmentUpdateJob = viewModelScope.launch {
-            while (true) {
-                delay(Constants.SKIP_MEDIA_SEGMENT_UPDATE_DELAY)
-                playerOrNull?.updateSkipMediaSegmentButton()
-            }
+    private fun cancelHandoff() {
+        val handoff = pendingHandoff ?: return
+        pendingHandoff = null
+        handoff.message?.cancel()
+
+        playerOrNull?.run {
+            preloadConfiguration = ExoPlayer.PreloadConfiguration.DEFAULT
+            if (mediaItemCount > handoff.index + 1) removeMediaItem(handoff.index + 1)
         }
+        handoff.onCompleted(false)
     }
 
-    private fun stopSkipMediaSegmentUpdates() {
-        skipMediaSegmentUpdateJob?.cancel()
+    /**
+     * Schedule progress reports and chapter marking updates along the timeline of the [jellyfinMediaSource].
+     * Play state transitions and seeks are handled by the player callbacks.
+     */
+    private fun scheduleTimeline(jellyfinMediaSource: JellyfinMediaSource) {
+        val scheduler = timelineScheduler ?: return
+        scheduler.clear()
+
+        scheduler.setHeartbeat(Constants.PLAYER_TIME_UPDATE_RATE) {
+            viewModelScope.launch { playerOrNull?.reportPlaybackState() }
+        }
+
+        chapterStartPositions = jellyfinMediaSource.item?.chapters.orEmpty().map { chapter -> chapter.startPositionTicks.ticks }
+        for (startPosition in chapterStartPositions) {
+            scheduler.addBoundary(startPosition.inWholeMilliseconds) {
+                playerOrNull?.setWatchedChapterMarkings()
+            }
+        }
     }
 
     /**
@@ -381,40 +592,41 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         queueManager.tryRestartPlayback()
     }
 
-    private suspend fun Player.reportPlaybackStart(mediaSource: RemoteJellyfinMediaSource) {
-        try {
-            val isPaused = !isPlaying
-            withContext(Dispatchers.IO) {
-                playStateApi.reportPlaybackStart(
-                    PlaybackStartInfo(
-                        itemId = mediaSource.itemId,
-                        playMethod = mediaSource.playMethod,
-                        playSessionId = mediaSource.playSessionId,
-                        liveStreamId = mediaSource.liveStreamId,
-                        audioStreamIndex = mediaSource.selectedAudioStream?.index,
-                        subtitleStreamIndex = mediaSource.selectedSubtitleStream?.index,
-                        isPaused = isPaused,
-                        isMuted = false,
-                        canSeek = true,
-                        positionTicks = mediaSource.startTime.inWholeTicks,
-                        volumeLevel = audioManager.getVolumeLevelPercent(),
-                        repeatMode = RepeatMode.REPEAT_NONE,
-                        playbackOrder = PlaybackOrder.DEFAULT,
-                    ),
-                )
+    private suspend fun Player.reportPlaybackStart(mediaSource: JellyfinMediaSource) {
+        val isPaused = !isPlaying
+        val positionTicks = mediaSource.startTime.inWholeTicks
+        val report: (suspend () -> Unit)? = when (mediaSource) {
+            is RemoteJellyfinMediaSource -> {
+                {
+                    playStateApi.reportPlaybackStart(
+                        PlaybackStartInfo(
+                            itemId = mediaSource.itemId,
+                            playMethod = mediaSource.playMethod,
+                            playSessionId = mediaSource.playSessionId,
+                            liveStreamId = mediaSource.liveStreamId,
+                            audioStreamIndex = mediaSource.selectedAudioStream?.index,
+                            subtitleStreamIndex = mediaSource.selectedSubtitleStream?.index,
+                            isPaused = isPaused,
+                            isMuted = false,
+                            canSeek = true,
+                            positionTicks = positionTicks,
+                            volumeLevel = audioManager.getVolumeLevelPercent(),
+                            repeatMode = RepeatMode.REPEAT_NONE,
+                            playbackOrder = PlaybackOrder.DEFAULT,
+                        ),
+                    )
+                }
             }
-        } catch (e: ApiClientException) {
-            Timber.e(e, "Failed to report playback start")
+            else -> null
         }
+        playbackJournal.record(mediaSource.itemId, PlaybackEvent.START, positionTicks, report = report)
     }
 
     private fun Player.setWatchedChapterMarkings() {
         val playbackPosition = currentPosition.milliseconds
-        val chapters = mediaSourceOrNull?.item?.chapters ?: return
-        val startPositions = chapters.map { c -> c.startPositionTicks.ticks }
-        val chapterMarkings = playerMenuHelper?.chapterMarkings?.markings ?: emptyList()
+        val chapterMarkings = playerMenuHelper?.chapterMarkings?.markings ?: return
 
-        startPositions.zip(chapterMarkings).forEach { (pos, marking) ->
+        chapterStartPositions.zip(chapterMarkings).forEach { (pos, marking) ->
             val color = if (playbackPosition >= pos) R.color.jellyfin_accent else R.color.playback_timebar_unplayed
             marking.setColor(color)
         }
@@ -425,7 +637,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         if (mediaSegments.isEmpty()) return
 
         val playbackPosition = currentPosition.milliseconds
-        val currentMediaSegment = mediaSegments.find { seg -> playbackPosition in seg.start..seg.end }
+        val currentMediaSegment = mediaSegments.find { seg -> playbackPosition >= seg.start && playbackPosition < seg.end }
         if (currentMediaSegment != null) {
             playerMenuHelper?.skipMediaSegmentButton?.showSkipSegmentButton(currentMediaSegment)
         } else {
@@ -434,15 +646,17 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     }
 
     private suspend fun Player.reportPlaybackState() {
-        val mediaSource = mediaSourceOrNull as? RemoteJellyfinMediaSource ?: return
-        val playbackPosition = currentPosition.milliseconds
-        if (playbackState != Player.STATE_ENDED) {
-            val stream = AudioManager.STREAM_MUSIC
-            val volumeRange = audioManager.getVolumeRange(stream)
-            val currentVolume = audioManager.getStreamVolume(stream)
-            val isPaused = !isPlaying
-            try {
-                withContext(Dispatchers.IO) {
+        val mediaSource = mediaSourceOrNull ?: return
+        if (playbackState == Player.STATE_ENDED) return
+
+        val positionTicks = currentPosition.milliseconds.inWholeTicks
+        val stream = AudioManager.STREAM_MUSIC
+        val volumeRange = audioManager.getVolumeRange(stream)
+        val currentVolume = audioManager.getStreamVolume(stream)
+        val isPaused = !isPlaying
+        val report: (suspend () -> Unit)? = when (mediaSource) {
+            is RemoteJellyfinMediaSource -> {
+                {
                     playStateApi.reportPlaybackProgress(
                         PlaybackProgressInfo(
                             itemId = mediaSource.itemId,
@@ -454,33 +668,43 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                             isPaused = isPaused,
                             isMuted = false,
                             canSeek = true,
-                            positionTicks = playbackPosition.inWholeTicks,
+                            positionTicks = positionTicks,
                             volumeLevel = (currentVolume - volumeRange.first) * Constants.PERCENT_MAX / volumeRange.width,
                             repeatMode = RepeatMode.REPEAT_NONE,
                             playbackOrder = PlaybackOrder.DEFAULT,
                         ),
                     )
                 }
-            } catch (e: ApiClientException) {
-                Timber.e(e, "Failed to report playback progress")
             }
+            else -> null
         }
+        playbackJournal.record(mediaSource.itemId, PlaybackEvent.PROGRESS, positionTicks, report = report)
     }
 
     private fun reportPlaybackStop() {
-        val mediaSource = mediaSourceOrNull as? RemoteJellyfinMediaSource ?: return
+        val mediaSource = mediaSourceOrNull ?: return
         val player = playerOrNull ?: return
         val hasFinished = player.playbackState == Player.STATE_ENDED
+        reportPlaybackStop(mediaSource, hasFinished, player.currentPosition.milliseconds)
+    }
+
+    private fun reportPlaybackStop(mediaSource: JellyfinMediaSource, hasFinished: Boolean, position: Duration) {
+        playbackSessionCollector.onPlaybackStopped(mediaSource.itemId, hasFinished)
+        stopPlaySession(mediaSource, hasFinished, position)
+    }
+
+    /**
+     * Report the play session of [mediaSource] as stopped to the server and stop its transcode.
+     */
+    private fun stopPlaySession(mediaSource: JellyfinMediaSource, hasFinished: Boolean, position: Duration) {
         val lastPositionTicks = when {
             hasFinished -> mediaSource.runTime.inWholeTicks
-            else -> player.currentPosition.milliseconds.inWholeTicks
+            else -> position.inWholeTicks
         }
-
-        // viewModelScope may already be cancelled at this point, so we need to fallback
-        CoroutineScope(Dispatchers.Main).launch {
-            try {
-                // Report stopped playback
-                withContext(Dispatchers.IO) {
+        val report: (suspend () -> Unit)? = when (mediaSource) {
+            is RemoteJellyfinMediaSource -> {
+                {
+                    // Report stopped playback
                     playStateApi.reportPlaybackStopped(
                         PlaybackStopInfo(
                             itemId = mediaSource.itemId,
@@ -490,19 +714,27 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                             failed = false,
                         ),
                     )
-                }
 
-                // Mark video as watched if playback finished
-                if (hasFinished) {
-                    withContext(Dispatchers.IO) {
+                    // Mark video as watched if playback finished
+                    if (hasFinished) {
                         playStateApi.markPlayedItem(itemId = mediaSource.itemId)
                     }
                 }
+            }
+            else -> null
+        }
 
-                // Stop active encoding if transcoding
-                stopTranscoding(mediaSource)
-            } catch (e: ApiClientException) {
-                Timber.e(e, "Failed to report playback stop")
+        // viewModelScope may already be cancelled at this point, so we need to fallback
+        CoroutineScope(Dispatchers.Main).launch {
+            playbackJournal.record(mediaSource.itemId, PlaybackEvent.STOP, lastPositionTicks, hasFinished, report)
+
+            // Stop active encoding if transcoding
+            if (mediaSource is RemoteJellyfinMediaSource) {
+                try {
+                    stopTranscoding(mediaSource)
+                } catch (e: ApiClientException) {
+                    Timber.e(e, "Failed to stop transcoding")
+                }
             }
         }
     }
@@ -520,40 +752,76 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
 
     private fun applyMediaSegments(jellyfinMediaSource: JellyfinMediaSource) {
         askToSkipMediaSegments = emptyList()
+        playerMenuHelper?.skipMediaSegmentButton?.hideSkipSegmentButton()
 
         viewModelScope.launch {
             if (jellyfinMediaSource.item != null) {
                 val mediaSegments = mediaSegmentRepository.getSegmentsForItem(jellyfinMediaSource.item)
+
+                // Another item started playing in the meantime
+                if (mediaSourceOrNull !== jellyfinMediaSource) return@launch
+                val newAutoSkipMediaSegments = mutableListOf<MediaSegmentDto>()
                 val newAskToSkipMediaSegments = mutableListOf<MediaSegmentDto>()
 
                 for (mediaSegment in mediaSegments) {
+                    if (mediaSegment.type == MediaSegmentType.OUTRO) {
+                        addPreloadNextAction(mediaSegment.start)
+                    }
+
                     val action = mediaSegmentRepository.getMediaSegmentAction(mediaSegment)
 
                     when (action) {
-                        MediaSegmentAction.SKIP -> addSkipAction(mediaSegment)
-                        MediaSegmentAction.ASK_TO_SKIP -> newAskToSkipMediaSegments.add(mediaSegment)
+                        MediaSegmentAction.SKIP -> {
+                            newAutoSkipMediaSegments.add(mediaSegment)
+                            addSkipAction(mediaSegment)
+                        }
+                        MediaSegmentAction.ASK_TO_SKIP -> {
+                            newAskToSkipMediaSegments.add(mediaSegment)
+                            addAskToSkipAction(mediaSegment)
+                        }
                         MediaSegmentAction.NOTHING -> Unit
                     }
                 }
 
+                setAutoSkipSegments(jellyfinMediaSource.itemId, newAutoSkipMediaSegments)
                 askToSkipMediaSegments = newAskToSkipMediaSegments
+                playerOrNull?.updateSkipMediaSegmentButton()
             }
         }
     }
 
+    /**
+     * Set the [segments] of [itemId] that are skipped automatically, so that the player doesn't buffer them.
+     */
+    fun setAutoSkipSegments(itemId: UUID, segments: List<MediaSegmentDto>) {
+        val regions = segments.map { segment -> segment.start.inWholeMicroseconds until segment.end.inWholeMicroseconds }
+        if (regions.isNotEmpty()) skipRegions[itemId.toString()] = regions else skipRegions.remove(itemId.toString())
+    }
+
     private fun addSkipAction(mediaSegment: MediaSegmentDto) {
-        val player = playerOrNull ?: return
+        timelineScheduler?.addBoundary(mediaSegment.start.inWholeMilliseconds) {
+            playerOrNull?.seekTo(mediaSegment.end.inWholeMilliseconds)
+        }
+    }
 
-        player
-            .createMessage { _, _ ->
-                viewModelScope.launch(Dispatchers.Main) {
-                    player.seekTo(mediaSegment.end.inWholeMilliseconds)
-                }
-            }
-            // Segments at position 0 will never be hit by ExoPlayer so we need to add a minimum value
-            .setPosition(mediaSegment.start.inWholeMilliseconds.coerceAtLeast(1))
-            .setDeleteAfterDelivery(false)
-            .send()
+    /**
+     * Show the skip button while playback is within the [mediaSegment] and hide it at its end.
+     */
+    private fun addAskToSkipAction(mediaSegment: MediaSegmentDto) {
+        val scheduler = timelineScheduler ?: return
+        scheduler.addBoundary(mediaSegment.start.inWholeMilliseconds) {
+            playerOrNull?.updateSkipMediaSegmentButton()
+        }
+        scheduler.addBoundary(mediaSegment.end.inWholeMilliseconds) {
+            playerOrNull?.updateSkipMediaSegmentButton()
+        }
+    }
+
+    private fun addPreloadNextAction(position: Duration) {
+        // Cleared together with the other boundaries once a different item starts playing
+        timelineScheduler?.addBoundary(position.inWholeMilliseconds) {
+            if (autoPlayNextEpisodeEnabled) queueManager.preloadNext()
+        }
     }
 
     // Player controls
@@ -573,8 +841,60 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
         playerOrNull?.seekToOffset(displayPreferences.skipForwardLength)
     }
 
-    fun seekByOffset(offsetMs: Long) {
-        playerOrNull?.seekToOffset(offsetMs)
+    /**
+     * Enter scrub mode for a seek interaction, e.g. dragging the seek bar.
+     *
+     * In scrub mode, seeks snap to the closest keyframe. That way, preview frames don't require decoding
+     * everything up to the exact position, which can be several seconds of video for long GOPs.
+     */
+    fun startScrubbing() {
+        val player = playerOrNull ?: return
+        if (isScrubbing) return
+
+        isScrubbing = true
+        scrubStartPositionMs = player.currentPosition
+        player.setSeekParameters(SeekParameters.CLOSEST_SYNC)
+    }
+
+    /**
+     * Show a preview frame at [positionMs] while scrubbing.
+     */
+    fun scrubTo(positionMs: Long) {
+        val player = playerOrNull ?: return
+        startScrubbing()
+
+        // Every seek could restart the transcode, so only the final position is sent to the server
+        if (mediaSourceOrNull?.playMethod == PlayMethod.TRANSCODE) return
+
+        val now = SystemClock.elapsedRealtime()
+        if (now - lastScrubPreviewMs < Constants.SCRUB_PREVIEW_INTERVAL_MS) return
+        lastScrubPreviewMs = now
+        player.seekTo(positionMs)
+    }
+
+    /**
+     * Leave scrub mode with a single exact seek to [positionMs].
+     *
+     * @param positionMs the position to seek to, or null to return to where scrubbing started.
+     */
+    fun stopScrubbing(positionMs: Long?) {
+        val player = playerOrNull ?: return
+        if (!isScrubbing) return
+
+        isScrubbing = false
+        player.setSeekParameters(SeekParameters.DEFAULT)
+        player.seekTo(positionMs ?: scrubStartPositionMs)
+    }
+
+    /**
+     * Leave scrub mode without seeking, e.g. because a different item is loaded,
+     * or because the time bar of the controls seeks to the final position itself.
+     */
+    fun cancelScrubbing() {
+        if (!isScrubbing) return
+
+        isScrubbing = false
+        playerOrNull?.setSeekParameters(SeekParameters.DEFAULT)
     }
 
     private fun getCurrentChapterStartPosition(chapters: List<ChapterInfo>, playbackPosition: Duration): Duration? {
@@ -622,14 +942,9 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     fun skipToPrevious() {
         val player = playerOrNull ?: return
         when {
-            // Skip to previous element
-            player.currentPosition <= Constants.MAX_SKIP_TO_PREV_MS -> viewModelScope.launch {
-                pause()
-                if (!queueManager.previous()) {
-                    // Skip to previous failed, go to start of video anyway
-                    playerOrNull?.seekTo(0)
-                    play()
-                }
+            // Skip to previous element, or go to start of video anyway if that failed
+            player.currentPosition <= Constants.MAX_SKIP_TO_PREV_MS -> {
+                if (!queueManager.previous()) player.seekTo(0)
             }
             // Rewind to start of track if not at the start already
             else -> player.seekTo(0)
@@ -637,9 +952,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     }
 
     fun skipToNext() {
-        viewModelScope.launch {
-            queueManager.next()
-        }
+        queueManager.next()
     }
 
     fun skipMediaSegment(mediaSegmentDto: MediaSegmentDto?) {
@@ -695,6 +1008,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     fun stop() {
         pause()
         reportPlaybackStop()
+        queueManager.release()
         releasePlayer()
     }
 
@@ -721,21 +1035,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
             }
             mediaSession.isActive = true
             notificationHelper.postNotification()
-        }
 
-        // Setup or stop regular progress updates
-        if (playbackState == Player.STATE_READY && playWhenReady) {
-            startProgressUpdates()
-            if (!playerMenuHelper?.chapterMarkings?.markings.isNullOrEmpty()) {
-                startChapterMarkingUpdates()
-            }
-            if (askToSkipMediaSegments.isNotEmpty()) {
-                startSkipMediaSegmentUpdates()
-            }
-        } else {
-            stopProgressUpdates()
-            stopChapterMarkingUpdates()
-            stopSkipMediaSegmentUpdates()
+            // Afterwards, only updated at boundaries on the timeline and after seeks
+            player.setWatchedChapterMarkings()
+            player.updateSkipMediaSegmentButton()
         }
 
         // Update media session
@@ -755,17 +1058,70 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                     player.reportPlaybackState()
                 }
                 Player.STATE_ENDED -> {
+                    // Only reached after the last item, the queue itself is played through the playlist
                     reportPlaybackStop()
-                    if (!autoPlayNextEpisodeEnabled || !queueManager.next()) {
-                        releasePlayer()
-                    }
+                    releasePlayer()
                 }
             }
         }
     }
 
+    override fun onPlayWhenReadyChanged(playWhenReady: Boolean, reason: Int) {
+        // Auto play of the next item is disabled, so playback ends with the current item
+        if (reason == Player.PLAY_WHEN_READY_CHANGE_REASON_END_OF_MEDIA_ITEM) {
+            val mediaSource = mediaSourceOrNull ?: return
+            reportPlaybackStop(mediaSource, hasFinished = true, position = mediaSource.runTime)
+            queueManager.release()
+            releasePlayer()
+        }
+    }
+
+    override fun onMediaItemTransition(mediaItem: MediaItem?, reason: Int) {
+        if (reason != Player.MEDIA_ITEM_TRANSITION_REASON_AUTO && reason != Player.MEDIA_ITEM_TRANSITION_REASON_SEEK) return
+        if (isHandingOff) return
+        val player = playerOrNull ?: return
+
+        pendingHandoff?.let { handoff ->
+            // The current stream ended before the handoff position was reached
+            if (player.currentMediaItemIndex == handoff.index + 1) {
+                completeHandoff(handoff, handoff.positionMs)
+                return
+            }
+            cancelHandoff()
+        }
+
+        val index = player.currentMediaItemIndex
+        if (index == queueManager.currentIndex) return
+
+        mediaSourceOrNull?.let { previousMediaSource ->
+            val hasFinished = reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO
+            val lastPosition = previousItemPosition.takeUnless { hasFinished } ?: previousMediaSource.runTime
+            reportPlaybackStop(previousMediaSource, hasFinished, lastPosition)
+        }
+        previousItemPosition = null
+
+        initialTracksSelected.set(false)
+        queueManager.onMediaItemTransition(index)
+    }
+
+    override fun onTracksChanged(tracks: Tracks) {
+        // Tracks of a preloaded item only become available after the transition, while the player stays ready
+        if (playerOrNull?.playbackState == Player.STATE_READY && !initialTracksSelected.getAndSet(true)) {
+            trackSelectionHelper.selectInitialTracks()
+        }
+    }
+
     override fun onPositionDiscontinuity(oldPosition: Player.PositionInfo, newPosition: Player.PositionInfo, reason: Int) {
         super.onPositionDiscontinuity(oldPosition, newPosition, reason)
+        // Reported before the media item transition
+        if (oldPosition.mediaItemIndex != newPosition.mediaItemIndex) {
+            previousItemPosition = oldPosition.positionMs.milliseconds
+        }
+        // Seeking needs to buffer anyway, so the new stream can take over right away
+        val handoff = pendingHandoff
+        if (handoff != null && !isHandingOff && reason == Player.DISCONTINUITY_REASON_SEEK) {
+            completeHandoff(handoff, newPosition.positionMs)
+        }
         playerOrNull?.setWatchedChapterMarkings()
         playerOrNull?.updateSkipMediaSegmentButton()
     }
@@ -778,6 +1134,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
                 release()
             }
             fallbackPreferExtensionRenderers = true
+            playbackSessionCollector.onFallback()
             setupPlayer()
             queueManager.tryRestartPlayback()
         } else {
@@ -786,7 +1143,10 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
             fallbackRetryJob?.cancel()
             fallbackRetryJob = viewModelScope.launch {
                 val retried = queueManager.restartPlaybackWithFallback(startPosition)
-                if (!retried) {
+                if (retried) {
+                    playbackSessionCollector.onFallback()
+                } else {
+                    playbackSessionCollector.onPlaybackFailed(error)
                     _error.postValue(error.localizedMessage.orEmpty())
                 }
             }
@@ -800,6 +1160,7 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
 
     override fun onCleared() {
         reportPlaybackStop()
+        queueManager.release()
         ProcessLifecycleOwner.get().lifecycle.removeObserver(lifecycleObserver)
         releasePlayer()
     }
@@ -807,4 +1168,57 @@ class PlayerViewModel(application: Application) : AndroidViewModel(application),
     fun setPlayerMenuHelper(menuHelper: PlayerMenuHelper) {
         playerMenuHelper = menuHelper
     }
+
+    private class PendingHandoff(
+        val index: Int,
+        val positionMs: Long,
+        val onCompleted: (Boolean) -> Unit,
+    ) {
+        var message: PlayerMessage? = null
+
+        /**
+         * Whether playback reached the handoff position.
+         */
+        var isDue = false
+
+        /**
+         * Whether the new source loaded any media yet.
+         */
+        var hasData = false
+
+        /**
+         * The end of the media the new source loaded, unknown for progressive streams.
+         */
+        var bufferedEndMs = C.TIME_UNSET
+
+        val isBuffered: Boolean
+            get() = when {
+                bufferedEndMs != C.TIME_UNSET -> bufferedEndMs >= positionMs + Constants.SEAMLESS_SWITCH_MIN_BUFFER_MS
+                else -> hasData
+            }
+    }
+
+    /**
+     * Tracks how far the new source of a pending handoff is buffered, as the player only reports that for the current item.
+     */
+    private inner class HandoffLoadListener : AnalyticsListener {
+        override fun onLoadCompleted(eventTime: AnalyticsListener.EventTime, loadEventInfo: LoadEventInfo, mediaLoadData: MediaLoadData) {
+            val handoff = getHandoff(eventTime) ?: return
+            if (mediaLoadData.dataType != C.DATA_TYPE_MEDIA || mediaLoadData.mediaEndTimeMs == C.TIME_UNSET) return
+
+            handoff.bufferedEndMs = maxOf(handoff.bufferedEndMs, mediaLoadData.mediaEndTimeMs)
+            maybeCompleteHandoff(handoff)
+        }
+
+        override fun onDownstreamFormatChanged(eventTime: AnalyticsListener.EventTime, mediaLoadData: MediaLoadData) {
+            val handoff = getHandoff(eventTime) ?: return
+            handoff.hasData = true
+            maybeCompleteHandoff(handoff)
+        }
+
+        private fun getHandoff(eventTime: AnalyticsListener.EventTime): PendingHandoff? {
+            val handoff = pendingHandoff ?: return null
+            return handoff.takeIf { eventTime.windowIndex == handoff.index + 1 }
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package org.jellyfin.mobile.player.audio
+
+import android.content.Context
+import androidx.media3.common.AudioAttributes
+import androidx.media3.common.Format
+import androidx.media3.common.MimeTypes
+import androidx.media3.exoplayer.audio.AudioCapabilities
+import androidx.media3.exoplayer.audio.AudioCapabilitiesReceiver
+import timber.log.Timber
+
+/**
+ * Tracks which compressed audio formats the current audio route, e.g. HDMI, an ARC receiver or Bluetooth,
+ * accepts as a bitstream.
+ *
+ * Capabilities are updated whenever the route changes, so that newly built device profiles and players follow it.
+ */
+class AudioPassthroughMonitor(context: Context) {
+    private val receiver = AudioCapabilitiesReceiver(context, ::onAudioCapabilitiesChanged, AudioAttributes.DEFAULT, null)
+
+    @Volatile
+    private var audioCapabilities: AudioCapabilities = receiver.register()
+
+    /**
+     * The codecs the current route accepts as a bitstream, as named by the server.
+     */
+    val passthroughCodecs: Set<String>
+        get() {
+            val capabilities = audioCapabilities
+            return PASSTHROUGH_FORMATS.filter { (_, format) ->
+                capabilities.isPassthroughPlaybackSupported(format, AudioAttributes.DEFAULT)
+            }.mapTo(LinkedHashSet()) { (codec, _) -> codec }
+        }
+
+    /**
+     * The maximum number of channels the current route supports for passthrough.
+     */
+    val maxChannelCount: Int
+        get() = audioCapabilities.maxChannelCount
+
+    private fun onAudioCapabilitiesChanged(audioCapabilities: AudioCapabilities) {
+        Timber.d("Audio capabilities changed to %s", audioCapabilities)
+        this.audioCapabilities = audioCapabilities
+    }
+
+    companion object {
+        /**
+         * Formats that can be passed through, in the order of preference when the server needs to encode audio.
+         */
+        private val PASSTHROUGH_FORMATS = listOf(
+            "eac3" to buildFormat(MimeTypes.AUDIO_E_AC3, channelCount = 6),
+            "ac3" to buildFormat(MimeTypes.AUDIO_AC3, channelCount = 6),
+            "truehd" to buildFormat(MimeTypes.AUDIO_TRUEHD, channelCount = 8),
+            "dts" to buildFormat(MimeTypes.AUDIO_DTS, channelCount = 6),
+        )
+
+        @Suppress("MagicNumber")
+        private fun buildFormat(mimeType: String, channelCount: Int) = Format.Builder()
+            .setSampleMimeType(mimeType)
+            .setChannelCount(channelCount)
+            .setSampleRate(48_000)
+            .build()
+    }
+}
@@ -0,0 +1,100 @@
+package org.jellyfin.mobile.player.bandwidth
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import android.net.wifi.WifiInfo
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import androidx.core.content.edit
+import androidx.core.content.getSystemService
+import androidx.media3.exoplayer.upstream.BandwidthMeter
+import androidx.media3.exoplayer.upstream.DefaultBandwidthMeter
+import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.utils.AndroidVersion
+import timber.log.Timber
+
+/**
+ * Persists bandwidth estimates per server and network, so that playback doesn't need to start with a generic guess.
+ *
+ * Networks are told apart by their transport type and, where the system exposes it, the Wi-Fi SSID.
+ * Estimates are smoothed across sessions and seed the [BandwidthMeter] of new players, which drives the initial track
+ * selection. They never limit the requested quality, only the bitrate of transcodes the server already decided on.
+ */
+class BandwidthEstimateStore(
+    context: Context,
+    private val appPreferences: AppPreferences,
+) {
+    private val connectivityManager: ConnectivityManager = context.getSystemService()!!
+    private val sharedPreferences: SharedPreferences =
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+    private val handler = Handler(Looper.getMainLooper())
+    private var lastPersistedMs = 0L
+
+    /**
+     * The persisted estimate for the current server and network in bits per second, or null if there is none yet.
+     */
+    fun getEstimate(): Long? {
+        val key = getCurrentKey() ?: return null
+        return sharedPreferences.getLong(key, 0).takeIf { estimate -> estimate > 0 }
+    }
+
+    /**
+     * Create a [BandwidthMeter] that starts with the persisted estimate and keeps it up to date.
+     *
+     * @param isRepresentative whether the current transfers reflect the connection, samples are only persisted if so.
+     */
+    fun createBandwidthMeter(context: Context, isRepresentative: () -> Boolean): DefaultBandwidthMeter {
+        val meter = DefaultBandwidthMeter.Builder(context).apply {
+            getEstimate()?.let { estimate -> setInitialBitrateEstimate(estimate) }
+        }.build()
+        meter.addEventListener(handler) { _, _, bitrateEstimate ->
+            if (isRepresentative()) onBandwidthSample(bitrateEstimate)
+        }
+        return meter
+    }
+
+    private fun onBandwidthSample(bitrateEstimate: Long) {
+        val now = SystemClock.elapsedRealtime()
+        if (bitrateEstimate <= 0 || now - lastPersistedMs < PERSIST_INTERVAL_MS) return
+        lastPersistedMs = now
+
+        val key = getCurrentKey() ?: return
+        val previous = sharedPreferences.getLong(key, 0)
+        val estimate = when {
+            previous > 0 -> (previous * (1 - SMOOTHING_FACTOR) + bitrateEstimate * SMOOTHING_FACTOR).toLong()
+            else -> bitrateEstimate
+        }
+        Timber.d("Bandwidth estimate for %s: %d bps", key, estimate)
+        sharedPreferences.edit { putLong(key, estimate) }
+    }
+
+    private fun getCurrentKey(): String? {
+        val serverId = appPreferences.currentServerId ?: return null
+        val capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.activeNetwork) ?: return null
+        val network = when {
+            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET) -> "ethernet"
+            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI) -> {
+                // The SSID is only available with location access, otherwise all Wi-Fi networks share an estimate
+                val ssid = when {
+                    AndroidVersion.isAtLeastQ -> (capabilities.transportInfo as? WifiInfo)?.ssid
+                    else -> null
+                }
+                if (ssid != null && ssid != UNKNOWN_SSID) "wifi:$ssid" else "wifi"
+            }
+            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR) -> "cellular"
+            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN) -> "vpn"
+            else -> "other"
+        }
+        return "$serverId/$network"
+    }
+
+    companion object {
+        private const val PREFERENCES_NAME = "bandwidth_estimates"
+        private const val PERSIST_INTERVAL_MS = 10_000L
+        private const val SMOOTHING_FACTOR = 0.3
+        private const val UNKNOWN_SSID = "<unknown ssid>"
+    }
+}
@@ -0,0 +1,212 @@
+package org.jellyfin.mobile.player.buffer
+
+import android.app.ActivityManager
+import android.content.Context
+import android.net.ConnectivityManager
+import android.net.NetworkCapabilities
+import android.os.SystemClock
+import androidx.core.content.getSystemService
+import androidx.media3.common.C
+import androidx.media3.common.util.Util
+import androidx.media3.exoplayer.DefaultLoadControl
+import androidx.media3.exoplayer.LoadControl
+import androidx.media3.exoplayer.upstream.BandwidthMeter
+import org.jellyfin.mobile.player.source.JellyfinMediaSource
+import org.jellyfin.mobile.player.source.LocalJellyfinMediaSource
+import org.jellyfin.mobile.utils.isLowRamDevice
+import org.jellyfin.sdk.model.api.PlayMethod
+import timber.log.Timber
+
+/**
+ * [LoadControl] that sizes its buffer targets from the current playback conditions instead of a fixed preset.
+ *
+ * Durations depend on where the media comes from, the measured bandwidth relative to the media bitrate and the network type.
+ * The amount of buffered bytes is bounded by the available heap, so that high bitrate remuxes can't exhaust it.
+ * Targets are re-evaluated periodically while loading, so they follow changing conditions during playback.
+ */
+class AdaptiveLoadControl private constructor(
+    context: Context,
+    private val bandwidthMeter: BandwidthMeter,
+    private val maxBufferBytes: Int,
+) : LoadControl by DefaultLoadControl.Builder().setTargetBufferBytes(maxBufferBytes).build() {
+    private val activityManager: ActivityManager = context.getSystemService()!!
+    private val connectivityManager: ConnectivityManager = context.getSystemService()!!
+    private val memoryInfo = ActivityManager.MemoryInfo()
+
+    @Volatile
+    private var sourceType = SourceType.DIRECT
+
+    @Volatile
+    private var mediaBitrate = C.RATE_UNSET_INT
+
+    @Volatile
+    private var lastEvaluationMs = C.TIME_UNSET
+
+    // Only accessed on the playback thread
+    private var targets = BufferTargets.Default
+    private var targetBufferBytes = maxBufferBytes
+    private var isLoading = false
+
+    constructor(context: Context, bandwidthMeter: BandwidthMeter) : this(context, bandwidthMeter, maxBufferBytes(context))
+
+    /**
+     * Update the buffer targets for the [source] that started playing.
+     */
+    fun onMediaSourceStarted(source: JellyfinMediaSource) {
+        sourceType = when {
+            source is LocalJellyfinMediaSource -> SourceType.LOCAL
+            source.playMethod == PlayMethod.TRANSCODE -> SourceType.TRANSCODE
+            else -> SourceType.DIRECT
+        }
+        mediaBitrate = source.sourceInfo.bitrate ?: C.RATE_UNSET_INT
+        lastEvaluationMs = C.TIME_UNSET
+    }
+
+    override fun shouldContinueLoading(parameters: LoadControl.Parameters): Boolean {
+        evaluateTargets()
+
+        val bufferedDurationUs = parameters.bufferedDurationUs
+        val minBufferUs = Util.getMediaDurationForPlayoutDuration(targets.minBufferUs, parameters.playbackSpeed)
+            .coerceAtMost(targets.maxBufferUs)
+        val targetBufferSizeReached = allocator.totalBytesAllocated >= targetBufferBytes
+
+        isLoading = when {
+            targetBufferSizeReached -> false
+            bufferedDurationUs < minBufferUs.coerceAtLeast(MIN_BUFFER_US) -> true
+            bufferedDurationUs >= targets.maxBufferUs -> false
+            else -> isLoading
+        }
+        return isLoading
+    }
+
+    override fun shouldStartPlayback(parameters: LoadControl.Parameters): Boolean {
+        val bufferedDurationUs = Util.getPlayoutDurationForMediaDuration(parameters.bufferedDurationUs, parameters.playbackSpeed)
+        val requiredBufferUs = when {
+            parameters.rebuffering -> targets.bufferForPlaybackAfterRebufferUs
+            else -> targets.bufferForPlaybackUs
+        }
+        return bufferedDurationUs >= requiredBufferUs || allocator.totalBytesAllocated >= targetBufferBytes
+    }
+
+    private fun evaluateTargets() {
+        val now = SystemClock.elapsedRealtime()
+        if (lastEvaluationMs != C.TIME_UNSET && now - lastEvaluationMs < EVALUATION_INTERVAL_MS) return
+        lastEvaluationMs = now
+
+        val newTargets = when (sourceType) {
+            SourceType.LOCAL -> BufferTargets.Local
+            SourceType.TRANSCODE -> BufferTargets.Transcode
+            SourceType.DIRECT -> {
+                val bitrate = mediaBitrate
+                val headroom = when {
+                    bitrate > 0 -> bandwidthMeter.bitrateEstimate.toDouble() / bitrate
+                    else -> 0.0
+                }
+                when {
+                    headroom >= FAST_NETWORK_HEADROOM -> BufferTargets.FastNetwork
+                    headroom >= SUFFICIENT_NETWORK_HEADROOM -> BufferTargets.Default
+                    else -> BufferTargets.SlowNetwork
+                }
+            }
+        }.let { newTargets ->
+            // Don't read too far ahead on metered networks, the user might not watch all of it
+            if (sourceType != SourceType.LOCAL && isNetworkMetered()) newTargets.limitedTo(METERED_MAX_BUFFER_US) else newTargets
+        }
+
+        val newTargetBufferBytes = availableBufferBytes()
+        if (newTargets != targets || newTargetBufferBytes != targetBufferBytes) {
+            Timber.d("Buffer targets changed to %s, max %d bytes", newTargets, newTargetBufferBytes)
+        }
+        targets = newTargets
+        targetBufferBytes = newTargetBufferBytes
+    }
+
+    private fun isNetworkMetered(): Boolean {
+        val capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.activeNetwork) ?: return false
+        return !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED) ||
+            capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)
+    }
+
+    /**
+     * The buffer size in bytes that the heap can currently accommodate, bytes already buffered count as available.
+     */
+    private fun availableBufferBytes(): Int {
+        val runtime = Runtime.getRuntime()
+        val usedHeap = runtime.totalMemory() - runtime.freeMemory()
+        val availableHeap = runtime.maxMemory() - usedHeap + allocator.totalBytesAllocated
+
+        activityManager.getMemoryInfo(memoryInfo)
+        val divisor = if (memoryInfo.lowMemory) LOW_MEMORY_HEAP_DIVISOR else HEAP_DIVISOR
+
+        return (availableHeap / divisor).coerceIn(MIN_BUFFER_BYTES.toLong(), maxBufferBytes.toLong()).toInt()
+    }
+
+    private enum class SourceType {
+        LOCAL,
+        DIRECT,
+        TRANSCODE,
+    }
+
+    private data class BufferTargets(
+        val minBufferUs: Long,
+        val maxBufferUs: Long,
+        val bufferForPlaybackUs: Long,
+        val bufferForPlaybackAfterRebufferUs: Long,
+    ) {
+        fun limitedTo(maxUs: Long) = copy(
+            minBufferUs = minBufferUs.coerceAtMost(maxUs),
+            maxBufferUs = maxBufferUs.coerceAtMost(maxUs),
+        )
+
+        @Suppress("MagicNumber")
+        companion object {
+            /**
+             * Files on the device can be read almost instantly, there's no need to read far ahead.
+             */
+            val Local = BufferTargets(10_000_000, 30_000_000, 1_000_000, 2_000_000)
+
+            /**
+             * The server can only provide transcoded segments as fast as it encodes them.
+             */
+            val Transcode = BufferTargets(20_000_000, 60_000_000, 2_500_000, 5_000_000)
+
+            /**
+             * The network is a multiple of the media bitrate, the buffer can be refilled quickly.
+             */
+            val FastNetwork = BufferTargets(15_000_000, 30_000_000, 1_000_000, 2_500_000)
+
+            val Default = BufferTargets(
+                DefaultLoadControl.DEFAULT_MIN_BUFFER_MS * 1000L,
+                DefaultLoadControl.DEFAULT_MAX_BUFFER_MS * 1000L,
+                DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS * 1000L,
+                DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS * 1000L,
+            )
+
+            /**
+             * The network is barely faster than the media, or the bitrate is unknown, build a large buffer to bridge dips.
+             */
+            val SlowNetwork = BufferTargets(50_000_000, 120_000_000, 2_500_000, 5_000_000)
+        }
+    }
+
+    companion object {
+        private const val EVALUATION_INTERVAL_MS = 5000L
+        private const val MIN_BUFFER_US = 2_000_000L
+        private const val METERED_MAX_BUFFER_US = 60_000_000L
+        private const val FAST_NETWORK_HEADROOM = 4.0
+        private const val SUFFICIENT_NETWORK_HEADROOM = 1.5
+        private const val HEAP_DIVISOR = 3
+        private const val LOW_MEMORY_HEAP_DIVISOR = 6
+        private const val MIN_BUFFER_BYTES = 256 * C.DEFAULT_BUFFER_SEGMENT_SIZE // 16 MiB
+
+        /**
+         * Upper bound for the buffer size, a fraction of the heap that never exceeds the default video buffer size.
+         */
+        private fun maxBufferBytes(context: Context): Int {
+            val heapDivisor = if (context.isLowRamDevice) LOW_MEMORY_HEAP_DIVISOR else HEAP_DIVISOR
+            return (Runtime.getRuntime().maxMemory() / heapDivisor)
+                .coerceIn(MIN_BUFFER_BYTES.toLong(), DefaultLoadControl.DEFAULT_VIDEO_BUFFER_SIZE.toLong())
+                .toInt()
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.jellyfin.mobile.player.buffer
+
+import androidx.media3.common.Timeline
+import androidx.media3.exoplayer.LoadControl
+
+/**
+ * [LoadControl] that doesn't buffer media which is going to be skipped automatically.
+ *
+ * Loading pauses shortly after the start of the next skip region of the loading item, the skip itself then restarts
+ * loading after the region. The margin ensures that playback actually reaches the region, so that the skip triggers.
+ *
+ * @param getSkipRegions provides the skip regions of a media item by its media id, in microseconds. Called on the
+ * playback thread.
+ */
+class SkipAwareLoadControl(
+    private val delegate: LoadControl,
+    private val getSkipRegions: (mediaId: String) -> List<LongRange>?,
+) : LoadControl by delegate {
+    // Only accessed on the playback thread
+    private val window = Timeline.Window()
+    private val period = Timeline.Period()
+
+    override fun shouldContinueLoading(parameters: LoadControl.Parameters): Boolean {
+        if (isBufferedToSkipRegion(parameters)) return false
+        return delegate.shouldContinueLoading(parameters)
+    }
+
+    override fun shouldStartPlayback(parameters: LoadControl.Parameters): Boolean {
+        // There won't be more buffer until playback reaches the skip region
+        if (isBufferedToSkipRegion(parameters)) return true
+        return delegate.shouldStartPlayback(parameters)
+    }
+
+    private fun isBufferedToSkipRegion(parameters: LoadControl.Parameters): Boolean {
+        val timeline = parameters.timeline
+        if (timeline.isEmpty) return false
+        timeline.getPeriodByUid(parameters.mediaPeriodId.periodUid, period)
+        timeline.getWindow(period.windowIndex, window)
+        val skipRegions = getSkipRegions(window.mediaItem.mediaId) ?: return false
+
+        val positionUs = parameters.playbackPositionUs + period.positionInWindowUs
+        val bufferedPositionUs = positionUs + parameters.bufferedDurationUs
+        return skipRegions.any { region ->
+            positionUs < region.first && bufferedPositionUs >= region.first + SKIP_REGION_LOAD_MARGIN_US && bufferedPositionUs < region.last
+        }
+    }
+
+    companion object {
+        private const val SKIP_REGION_LOAD_MARGIN_US = 1_000_000L
+    }
+}
@@ -1,11 +1,24 @@
 package org.jellyfin.mobile.player.deviceprofile
 
+import android.media.MediaCodecInfo
 import android.media.MediaCodecInfo.CodecProfileLevel
 import android.media.MediaFormat
 import androidx.media3.common.MimeTypes
+import org.jellyfin.mobile.utils.AndroidVersion
 
 @Suppress("TooManyFunctions", "CyclomaticComplexMethod")
 object CodecHelpers {
+    const val VIDEO_RANGE_SDR = "SDR"
+    const val VIDEO_RANGE_HDR10 = "HDR10"
+    const val VIDEO_RANGE_HDR10_PLUS = "HDR10Plus"
+    const val VIDEO_RANGE_HLG = "HLG"
+    const val VIDEO_RANGE_DOVI = "DOVI"
+
+    /**
+     * Name prefixes of the software codecs that ship with Android.
+     */
+    private val SOFTWARE_CODEC_PREFIXES = listOf("omx.google.", "c2.android.")
+
     fun getVideoCodec(mimeType: String): String? = when (mimeType) {
         MediaFormat.MIMETYPE_VIDEO_MPEG2 -> "mpeg2video"
         MediaFormat.MIMETYPE_VIDEO_H263 -> "h263"
@@ -124,6 +137,41 @@ object CodecHelpers {
         else -> null
     }
 
+    /**
+     * Get the HDR video range type, as named by the server, that a decoder for [mimeType] supporting [profile] can decode.
+     * HDR10+ and Dolby Vision require dedicated profiles, while HLG only needs 10 bit support.
+     */
+    fun getVideoRangeType(mimeType: String, profile: Int): String? = when (mimeType) {
+        MediaFormat.MIMETYPE_VIDEO_HEVC -> when (profile) {
+            CodecProfileLevel.HEVCProfileMain10 -> VIDEO_RANGE_HLG
+            CodecProfileLevel.HEVCProfileMain10HDR10 -> VIDEO_RANGE_HDR10
+            CodecProfileLevel.HEVCProfileMain10HDR10Plus -> VIDEO_RANGE_HDR10_PLUS
+            else -> null
+        }
+        MediaFormat.MIMETYPE_VIDEO_VP9 -> when (profile) {
+            CodecProfileLevel.VP9Profile2 -> VIDEO_RANGE_HLG
+            CodecProfileLevel.VP9Profile2HDR -> VIDEO_RANGE_HDR10
+            CodecProfileLevel.VP9Profile2HDR10Plus -> VIDEO_RANGE_HDR10_PLUS
+            else -> null
+        }
+        MediaFormat.MIMETYPE_VIDEO_AV1 -> when (profile) {
+            CodecProfileLevel.AV1ProfileMain10 -> VIDEO_RANGE_HLG
+            CodecProfileLevel.AV1ProfileMain10HDR10 -> VIDEO_RANGE_HDR10
+            CodecProfileLevel.AV1ProfileMain10HDR10Plus -> VIDEO_RANGE_HDR10_PLUS
+            else -> null
+        }
+        // Only profiles with an HEVC base layer, as the decoder is registered for hevc
+        MediaFormat.MIMETYPE_VIDEO_DOLBY_VISION -> when (profile) {
+            CodecProfileLevel.DolbyVisionProfileDvheDtr,
+            CodecProfileLevel.DolbyVisionProfileDvheStn,
+            CodecProfileLevel.DolbyVisionProfileDvheDtb,
+            CodecProfileLevel.DolbyVisionProfileDvheSt,
+            -> VIDEO_RANGE_DOVI
+            else -> null
+        }
+        else -> null
+    }
+
     fun getVideoLevel(codec: String, level: Int): Int? = when (codec) {
         "mpeg2video" -> getMPEG2VideoLevel(level)
         "h263" -> getH263Level(level)
@@ -253,6 +301,16 @@ object CodecHelpers {
         }
     }
 
+    /**
+     * Whether the decoder is backed by hardware, older versions of Android only expose this through the codec name.
+     */
+    fun isHardwareAccelerated(codecInfo: MediaCodecInfo): Boolean {
+        if (AndroidVersion.isAtLeastQ) return codecInfo.isHardwareAccelerated
+
+        val name = codecInfo.name.lowercase()
+        return SOFTWARE_CODEC_PREFIXES.none { prefix -> name.startsWith(prefix) }
+    }
+
     fun getAudioProfile(codec: String, profile: Int): String? = when (codec) {
         "aac" -> getAACProfile(profile)
         else -> null
@@ -0,0 +1,25 @@
+package org.jellyfin.mobile.player.deviceprofile
+
+import kotlinx.serialization.Serializable
+
+/**
+ * Codec support of the device as probed from the [android.media.MediaCodecList].
+ *
+ * @param key identifies the system and app build the capabilities were probed with, they're probed again once it changes.
+ * @param supportedVideoCodecs the supported video codecs for each of the supported container formats.
+ * @param supportedAudioCodecs the supported audio codecs for each of the supported container formats.
+ * @param videoCodecProfiles the supported profiles for each video codec.
+ * @param videoCodecLimits the sizes and frame rates each video codec can play back smoothly.
+ * @param videoCodecRangeTypes the HDR video range types each video codec can decode, see [CodecHelpers.getVideoRangeType].
+ * @param maxAvcRawLevel the highest supported AVC level as a [android.media.MediaCodecInfo.CodecProfileLevel] constant.
+ */
+@Serializable
+data class DeviceCapabilities(
+    val key: String,
+    val supportedVideoCodecs: List<List<String>>,
+    val supportedAudioCodecs: List<List<String>>,
+    val videoCodecProfiles: Map<String, Set<String>>,
+    val videoCodecLimits: Map<String, VideoCodecLimits>,
+    val videoCodecRangeTypes: Map<String, Set<String>>,
+    val maxAvcRawLevel: Int,
+)
@@ -7,6 +7,7 @@ import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.getAudioProfile
 import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.getVideoCodec
 import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.getVideoLevel
 import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.getVideoProfile
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.getVideoRangeType
 import kotlin.math.max
 
 sealed class DeviceCodec(
@@ -21,6 +22,9 @@ sealed class DeviceCodec(
         profiles: Set<String>,
         private val levels: Set<Int>,
         maxBitrate: Int,
+        val limits: VideoCodecLimits,
+        val rangeTypes: Set<String>,
+        private val isHardwareAccelerated: Boolean,
     ) : DeviceCodec(name, mimeType, profiles, maxBitrate) {
 
         fun mergeCodec(codecToMerge: Video): Video = Video(
@@ -29,6 +33,14 @@ sealed class DeviceCodec(
             profiles = profiles + codecToMerge.profiles,
             levels = levels + codecToMerge.levels,
             maxBitrate = max(maxBitrate, codecToMerge.maxBitrate),
+            // Software decoders advertise sizes and frame rates they can't sustain, so they only count without hardware decoders
+            limits = when {
+                isHardwareAccelerated == codecToMerge.isHardwareAccelerated -> limits.mergeLimits(codecToMerge.limits)
+                isHardwareAccelerated -> limits
+                else -> codecToMerge.limits
+            },
+            rangeTypes = rangeTypes + codecToMerge.rangeTypes,
+            isHardwareAccelerated = isHardwareAccelerated || codecToMerge.isHardwareAccelerated,
         )
     }
 
@@ -58,7 +70,7 @@ sealed class DeviceCodec(
     }
 
     companion object {
-        fun from(codecCapabilities: CodecCapabilities): DeviceCodec? {
+        fun from(codecCapabilities: CodecCapabilities, isHardwareAccelerated: Boolean): DeviceCodec? {
             val mimeType = codecCapabilities.mimeType
 
             // Check if this mimeType represents a video or audio codec
@@ -68,9 +80,11 @@ sealed class DeviceCodec(
                 videoCodec != null -> {
                     val profiles = HashSet<String>()
                     val levels = HashSet<Int>()
+                    val rangeTypes = HashSet<String>()
                     for (profileLevel in codecCapabilities.profileLevels) {
                         getVideoProfile(videoCodec, profileLevel.profile)?.let(profiles::add)
                         getVideoLevel(videoCodec, profileLevel.level)?.let(levels::add)
+                        getVideoRangeType(mimeType, profileLevel.profile)?.let(rangeTypes::add)
                     }
 
                     Video(
@@ -79,6 +93,9 @@ sealed class DeviceCodec(
                         profiles = profiles,
                         levels = levels,
                         maxBitrate = codecCapabilities.videoCapabilities!!.bitrateRange.upper,
+                        limits = VideoCodecLimits.from(codecCapabilities.videoCapabilities!!),
+                        rangeTypes = rangeTypes,
+                        isHardwareAccelerated = isHardwareAccelerated,
                     )
                 }
                 audioCodec != null -> {
@@ -1,13 +1,31 @@
 package org.jellyfin.mobile.player.deviceprofile
 
+import android.content.Context
+import android.hardware.display.DisplayManager
 import android.media.MediaCodecList
 import android.media.MediaFormat
+import android.os.Build
+import android.view.Display
+import androidx.core.content.getSystemService
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.json.Json
 import kotlinx.serialization.json.buildJsonObject
 import kotlinx.serialization.json.put
+import org.jellyfin.mobile.BuildConfig
 import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.player.audio.AudioPassthroughMonitor
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.VIDEO_RANGE_DOVI
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.VIDEO_RANGE_HDR10
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.VIDEO_RANGE_HDR10_PLUS
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.VIDEO_RANGE_HLG
+import org.jellyfin.mobile.player.deviceprofile.CodecHelpers.VIDEO_RANGE_SDR
 import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder.Companion.AVAILABLE_AUDIO_CODECS
 import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder.Companion.AVAILABLE_VIDEO_CODECS
 import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder.Companion.SUPPORTED_CONTAINER_FORMATS
+import org.jellyfin.mobile.utils.AndroidVersion
 import org.jellyfin.mobile.utils.Constants
 import org.jellyfin.sdk.model.api.CodecProfile
 import org.jellyfin.sdk.model.api.CodecType
@@ -22,14 +40,26 @@ import org.jellyfin.sdk.model.api.ProfileConditionValue
 import org.jellyfin.sdk.model.api.SubtitleDeliveryMethod
 import org.jellyfin.sdk.model.api.SubtitleProfile
 import org.jellyfin.sdk.model.api.TranscodingProfile
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
 
+/**
+ * Builds the device profiles sent to the server, based on the codecs supported by the device.
+ *
+ * Probing the codecs is slow, so the results are cached on disk and only probed again once the system or app is updated.
+ * Call [preload] early to move the probe off the path of the first playback.
+ * HDR support of the display and audio passthrough support of the audio route are checked whenever a profile is built,
+ * as both can change, e.g. on TV devices.
+ */
 class DeviceProfileBuilder(
+    context: Context,
     private val appPreferences: AppPreferences,
+    private val audioPassthroughMonitor: AudioPassthroughMonitor,
 ) {
-    private val supportedVideoCodecs: Array<Array<String>>
-    private val supportedAudioCodecs: Array<Array<String>>
-    private val videoCodecsProfiles: Map<String, Set<String>>
-    private val maxAvcRawLevel: Int
+    private val displayManager: DisplayManager = context.getSystemService()!!
+    private val cacheFile = File(context.cacheDir, CAPABILITIES_CACHE_FILE)
+    private val capabilities: DeviceCapabilities by lazy { loadCapabilities() }
 
     private val transcodingProfiles: List<TranscodingProfile>
 
@@ -38,6 +68,69 @@ class DeviceProfileBuilder(
             SUPPORTED_CONTAINER_FORMATS.size == AVAILABLE_VIDEO_CODECS.size && SUPPORTED_CONTAINER_FORMATS.size == AVAILABLE_AUDIO_CODECS.size,
         )
 
+        transcodingProfiles = listOf(
+            TranscodingProfile(
+                type = DlnaProfileType.VIDEO,
+                container = "ts",
+                videoCodec = "h264",
+                audioCodec = "mp1,mp2,mp3,aac,ac3,eac3,dts,mlp,truehd",
+                protocol = MediaStreamProtocol.HLS,
+                conditions = emptyList(),
+            ),
+            TranscodingProfile(
+                type = DlnaProfileType.VIDEO,
+                container = "mkv",
+                videoCodec = "h264",
+                audioCodec = AVAILABLE_AUDIO_CODECS[SUPPORTED_CONTAINER_FORMATS.indexOf("mkv")].joinToString(","),
+                protocol = MediaStreamProtocol.HLS,
+                conditions = emptyList(),
+            ),
+            TranscodingProfile(
+                type = DlnaProfileType.AUDIO,
+                container = "mp3",
+                videoCodec = "",
+                audioCodec = "mp3",
+                protocol = MediaStreamProtocol.HTTP,
+                conditions = emptyList(),
+            ),
+        )
+    }
+
+    /**
+     * Load the device capabilities in the background, so that they're available once they're needed.
+     */
+    fun preload() {
+        CoroutineScope(Dispatchers.IO).launch { capabilities }
+    }
+
+    private fun loadCapabilities(): DeviceCapabilities {
+        val key = "${Build.FINGERPRINT}/${BuildConfig.VERSION_CODE}"
+        readCachedCapabilities()?.takeIf { cached -> cached.key == key }?.let { cached -> return cached }
+
+        Timber.i("Probing device codecs")
+        val capabilities = probeCapabilities(key)
+        try {
+            cacheFile.writeText(Json.encodeToString(capabilities))
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to cache device capabilities")
+        }
+        return capabilities
+    }
+
+    private fun readCachedCapabilities(): DeviceCapabilities? {
+        if (!cacheFile.exists()) return null
+        return try {
+            Json.decodeFromString(cacheFile.readText())
+        } catch (e: IOException) {
+            Timber.e(e, "Failed to read cached device capabilities")
+            null
+        } catch (e: SerializationException) {
+            Timber.e(e, "Failed to load cached device capabilities")
+            null
+        }
+    }
+
+    private fun probeCapabilities(key: String): DeviceCapabilities {
         // Load Android-supported codecs
         val videoCodecs: MutableMap<String, DeviceCodec.Video> = HashMap()
         val audioCodecs: MutableMap<String, DeviceCodec.Audio> = HashMap()
@@ -45,6 +138,7 @@ class DeviceProfileBuilder(
         val androidCodecs = MediaCodecList(MediaCodecList.REGULAR_CODECS)
         for (codecInfo in androidCodecs.codecInfos) {
             if (codecInfo.isEncoder) continue
+            val isHardwareAccelerated = CodecHelpers.isHardwareAccelerated(codecInfo)
 
             for (mimeType in codecInfo.supportedTypes) {
                 val capabilities = codecInfo.getCapabilitiesForType(mimeType)
@@ -55,7 +149,7 @@ class DeviceProfileBuilder(
                     }
                 }
 
-                val codec = DeviceCodec.from(capabilities) ?: continue
+                val codec = DeviceCodec.from(capabilities, isHardwareAccelerated) ?: continue
                 val name = codec.name
                 when (codec) {
                     is DeviceCodec.Video -> {
@@ -75,46 +169,24 @@ class DeviceProfileBuilder(
                 }
             }
         }
-        maxAvcRawLevel = maxAvcLevel
 
         // Build map of supported codecs from device support and hardcoded data
-        supportedVideoCodecs = Array(AVAILABLE_VIDEO_CODECS.size) { i ->
-            AVAILABLE_VIDEO_CODECS[i].filter { codec ->
-                videoCodecs.containsKey(codec)
-            }.toTypedArray()
-        }
-        supportedAudioCodecs = Array(AVAILABLE_AUDIO_CODECS.size) { i ->
-            AVAILABLE_AUDIO_CODECS[i].filter { codec ->
-                audioCodecs.containsKey(codec) || codec in FORCED_AUDIO_CODECS
-            }.toTypedArray()
-        }
-        videoCodecsProfiles = videoCodecs.entries.associate { (k, v) -> k to v.profiles }
-
-        transcodingProfiles = listOf(
-            TranscodingProfile(
-                type = DlnaProfileType.VIDEO,
-                container = "ts",
-                videoCodec = "h264",
-                audioCodec = "mp1,mp2,mp3,aac,ac3,eac3,dts,mlp,truehd",
-                protocol = MediaStreamProtocol.HLS,
-                conditions = emptyList(),
-            ),
-            TranscodingProfile(
-                type = DlnaProfileType.VIDEO,
-                container = "mkv",
-                videoCodec = "h264",
-                audioCodec = AVAILABLE_AUDIO_CODECS[SUPPORTED_CONTAINER_FORMATS.indexOf("mkv")].joinToString(","),
-                protocol = MediaStreamProtocol.HLS,
-                conditions = emptyList(),
-            ),
-            TranscodingProfile(
-                type = DlnaProfileType.AUDIO,
-                container = "mp3",
-                videoCodec = "",
-                audioCodec = "mp3",
-                protocol = MediaStreamProtocol.HTTP,
-                conditions = emptyList(),
-            ),
+        return DeviceCapabilities(
+            key = key,
+            supportedVideoCodecs = AVAILABLE_VIDEO_CODECS.map { codecs ->
+                codecs.filter { codec ->
+                    videoCodecs.containsKey(codec)
+                }
+            },
+            supportedAudioCodecs = AVAILABLE_AUDIO_CODECS.map { codecs ->
+                codecs.filter { codec ->
+                    audioCodecs.containsKey(codec) || codec in FORCED_AUDIO_CODECS
+                }
+            },
+            videoCodecProfiles = videoCodecs.entries.associate { (k, v) -> k to v.profiles },
+            videoCodecLimits = videoCodecs.entries.associate { (k, v) -> k to v.limits },
+            videoCodecRangeTypes = videoCodecs.entries.associate { (k, v) -> k to v.rangeTypes },
+            maxAvcRawLevel = maxAvcLevel,
         )
     }
 
@@ -123,6 +195,9 @@ class DeviceProfileBuilder(
         val directPlayProfiles = ArrayList<DirectPlayProfile>()
         val codecProfiles = ArrayList<CodecProfile>()
 
+        val displayRangeTypes = getDisplayRangeTypes()
+        val supportedVideoCodecs = capabilities.supportedVideoCodecs
+        val supportedAudioCodecs = capabilities.supportedAudioCodecs
         for (i in SUPPORTED_CONTAINER_FORMATS.indices) {
             val container = SUPPORTED_CONTAINER_FORMATS[i]
             if (supportedVideoCodecs[i].isNotEmpty()) {
@@ -139,6 +214,8 @@ class DeviceProfileBuilder(
                 )
                 for (videoCodec in supportedVideoCodecs[i]) {
                     generateCodecProfile(container, videoCodec)?.let(codecProfiles::add)
+                    codecProfiles.addAll(generateLimitCodecProfiles(container, videoCodec))
+                    codecProfiles.add(generateRangeTypeCodecProfile(container, videoCodec, displayRangeTypes))
                 }
             }
             if (supportedAudioCodecs[i].isNotEmpty()) {
@@ -165,7 +242,7 @@ class DeviceProfileBuilder(
         return DeviceProfile(
             name = Constants.APP_INFO_NAME,
             directPlayProfiles = directPlayProfiles,
-            transcodingProfiles = transcodingProfiles,
+            transcodingProfiles = getTranscodingProfiles(),
             containerProfiles = containerProfiles,
             codecProfiles = codecProfiles,
             subtitleProfiles = subtitleProfiles,
@@ -179,7 +256,7 @@ class DeviceProfileBuilder(
         container: String,
         videoCodec: String,
     ): CodecProfile? {
-        val profilesSet = videoCodecsProfiles[videoCodec]
+        val profilesSet = capabilities.videoCodecProfiles[videoCodec]
         if (profilesSet?.isNotEmpty() != true) {
             return null
         }
@@ -200,6 +277,205 @@ class DeviceProfileBuilder(
         )
     }
 
+    /**
+     * Get the transcoding profiles for the current audio route.
+     *
+     * If the route accepts compressed audio as a bitstream, the server may keep all channels and should prefer encoding
+     * to a format that can be passed through over downmixing to stereo.
+     */
+    private fun getTranscodingProfiles(): List<TranscodingProfile> {
+        val passthroughCodecs = audioPassthroughMonitor.passthroughCodecs
+        if (passthroughCodecs.isEmpty()) return transcodingProfiles
+
+        val maxAudioChannels = audioPassthroughMonitor.maxChannelCount.toString()
+        return transcodingProfiles.map { profile ->
+            if (profile.type != DlnaProfileType.VIDEO) return@map profile
+
+            val audioCodecs = profile.audioCodec.orEmpty().split(',')
+            val preferredCodecs = passthroughCodecs.filter { codec -> codec in ENCODABLE_PASSTHROUGH_CODECS && codec in audioCodecs }
+            profile.copy(
+                audioCodec = (preferredCodecs + audioCodecs).distinct().joinToString(","),
+                maxAudioChannels = maxAudioChannels,
+            )
+        }
+    }
+
+    /**
+     * Generate codec profiles that limit the size and frame rate of [videoCodec] to what the device can decode smoothly,
+     * so that the server transcodes content that would otherwise drop frames.
+     *
+     * Each size tier applies to content wider than the tier below it. For larger content, the profiles of all smaller
+     * tiers apply as well, so a tier only gets a profile if its frame rate limit is stricter than theirs.
+     * Content in a tier that can't be decoded at any common frame rate is limited to the width of the tier below it.
+     */
+    private fun generateLimitCodecProfiles(
+        container: String,
+        videoCodec: String,
+    ): List<CodecProfile> {
+        val limits = capabilities.videoCodecLimits[videoCodec] ?: return emptyList()
+        val codecProfiles = ArrayList<CodecProfile>()
+
+        codecProfiles.add(
+            CodecProfile(
+                type = CodecType.VIDEO,
+                container = container,
+                codec = videoCodec,
+                applyConditions = listOf(),
+                conditions = listOf(
+                    ProfileCondition(
+                        condition = ProfileConditionType.LESS_THAN_EQUAL,
+                        property = ProfileConditionValue.WIDTH,
+                        value = limits.maxWidth.toString(),
+                        isRequired = false,
+                    ),
+                    ProfileCondition(
+                        condition = ProfileConditionType.LESS_THAN_EQUAL,
+                        property = ProfileConditionValue.HEIGHT,
+                        value = limits.maxHeight.toString(),
+                        isRequired = false,
+                    ),
+                ),
+            ),
+        )
+
+        var previousWidth = 0
+        var previousFrameRate = VideoCodecLimits.FRAME_RATES.first()
+        for ((index, size) in VideoCodecLimits.SIZES.withIndex()) {
+            val maxFrameRate = limits.maxFrameRates.getOrElse(index) { 0 }
+            // Sizes the decoder doesn't support at all are covered by the maximum size
+            if (maxFrameRate == 0) break
+
+            // Larger sizes are limited by this profile as well.
+            // Without a smaller tier to fall back to, only the maximum size applies.
+            if (maxFrameRate == VideoCodecLimits.BELOW_MIN_FRAME_RATE) {
+                if (previousWidth > 0) {
+                    val condition = ProfileCondition(
+                        condition = ProfileConditionType.LESS_THAN_EQUAL,
+                        property = ProfileConditionValue.WIDTH,
+                        value = previousWidth.toString(),
+                        isRequired = false,
+                    )
+                    codecProfiles.add(generateTierCodecProfile(container, videoCodec, previousWidth, condition))
+                }
+                break
+            }
+
+            // Only needed if stricter than the limit of the smaller tiers, which apply here as well
+            if (maxFrameRate < previousFrameRate) {
+                val condition = ProfileCondition(
+                    condition = ProfileConditionType.LESS_THAN_EQUAL,
+                    property = ProfileConditionValue.VIDEO_FRAMERATE,
+                    value = maxFrameRate.toString(),
+                    isRequired = false,
+                )
+                codecProfiles.add(generateTierCodecProfile(container, videoCodec, previousWidth, condition))
+                previousFrameRate = maxFrameRate
+            }
+            previousWidth = size.first
+        }
+
+        return codecProfiles
+    }
+
+    /**
+     * Generate a codec profile that applies [condition] to [videoCodec] content wider than [previousWidth].
+     */
+    private fun generateTierCodecProfile(
+        container: String,
+        videoCodec: String,
+        previousWidth: Int,
+        condition: ProfileCondition,
+    ): CodecProfile {
+        val applyConditions = when {
+            previousWidth > 0 -> listOf(
+                ProfileCondition(
+                    condition = ProfileConditionType.GREATER_THAN_EQUAL,
+                    property = ProfileConditionValue.WIDTH,
+                    value = (previousWidth + 1).toString(),
+                    isRequired = false,
+                ),
+            )
+            else -> listOf()
+        }
+        return CodecProfile(
+            type = CodecType.VIDEO,
+            container = container,
+            codec = videoCodec,
+            applyConditions = applyConditions,
+            conditions = listOf(condition),
+        )
+    }
+
+    /**
+     * Generate a codec profile with the video range types of [videoCodec] that can be shown without tone mapping.
+     *
+     * HDR formats need support by both the decoder and the display, otherwise the server tone maps them to SDR.
+     * Dolby Vision streams with a backwards compatible base layer play that layer if Dolby Vision itself isn't supported,
+     * and HDR10+ falls back to its static HDR10 metadata.
+     */
+    private fun generateRangeTypeCodecProfile(
+        container: String,
+        videoCodec: String,
+        displayRangeTypes: Set<String>,
+    ): CodecProfile {
+        val decoderRangeTypes = capabilities.videoCodecRangeTypes[videoCodec].orEmpty()
+        val supportedRangeTypes = decoderRangeTypes intersect displayRangeTypes
+        val supportsHdr10 = VIDEO_RANGE_HDR10 in supportedRangeTypes || VIDEO_RANGE_HDR10_PLUS in supportedRangeTypes
+        val supportsHlg = VIDEO_RANGE_HLG in supportedRangeTypes
+        val supportsDolbyVision = VIDEO_RANGE_DOVI in supportedRangeTypes
+
+        val rangeTypes = buildList {
+            add(VIDEO_RANGE_SDR)
+            add(VIDEO_RANGE_DOVI_WITH_SDR)
+            if (supportsHdr10) {
+                add(VIDEO_RANGE_HDR10)
+                add(VIDEO_RANGE_HDR10_PLUS)
+            }
+            if (supportsHlg) add(VIDEO_RANGE_HLG)
+            if (supportsHdr10 || supportsDolbyVision) {
+                add(VIDEO_RANGE_DOVI_WITH_HDR10)
+                add(VIDEO_RANGE_DOVI_WITH_HDR10_PLUS)
+            }
+            if (supportsHlg || supportsDolbyVision) add(VIDEO_RANGE_DOVI_WITH_HLG)
+            if (supportsDolbyVision) add(VIDEO_RANGE_DOVI)
+        }
+
+        return CodecProfile(
+            type = CodecType.VIDEO,
+            container = container,
+            codec = videoCodec,
+            applyConditions = listOf(),
+            conditions = listOf(
+                ProfileCondition(
+                    condition = ProfileConditionType.EQUALS_ANY,
+                    property = ProfileConditionValue.VIDEO_RANGE_TYPE,
+                    value = rangeTypes.joinToString("|"),
+                    isRequired = false,
+                ),
+            ),
+        )
+    }
+
+    /**
+     * The HDR video range types the default display can show.
+     */
+    private fun getDisplayRangeTypes(): Set<String> {
+        if (!AndroidVersion.isAtLeastN) return emptySet()
+        val display = displayManager.getDisplay(Display.DEFAULT_DISPLAY) ?: return emptySet()
+
+        @Suppress("DEPRECATION")
+        val hdrTypes = display.hdrCapabilities?.supportedHdrTypes ?: return emptySet()
+        return hdrTypes.mapNotNullTo(HashSet()) { hdrType ->
+            when (hdrType) {
+                Display.HdrCapabilities.HDR_TYPE_HDR10 -> VIDEO_RANGE_HDR10
+                Display.HdrCapabilities.HDR_TYPE_HDR10_PLUS -> VIDEO_RANGE_HDR10_PLUS
+                Display.HdrCapabilities.HDR_TYPE_HLG -> VIDEO_RANGE_HLG
+                Display.HdrCapabilities.HDR_TYPE_DOLBY_VISION -> VIDEO_RANGE_DOVI
+                else -> null
+            }
+        }
+    }
+
     private fun getSubtitleProfiles(embedded: Array<String>, external: Array<String>): List<SubtitleProfile> = ArrayList<SubtitleProfile>().apply {
         for (format in embedded) {
             add(SubtitleProfile(format = format, method = SubtitleDeliveryMethod.EMBED))
@@ -232,12 +508,26 @@ class DeviceProfileBuilder(
     )
 
     fun getWebCodecCapabilitiesJson(): String = buildJsonObject {
-        put("h264MaxLevel", CodecHelpers.getVideoLevel("h264", maxAvcRawLevel)?.toString() ?: DEFAULT_H264_MAX_LEVEL)
+        put("h264MaxLevel", CodecHelpers.getVideoLevel("h264", capabilities.maxAvcRawLevel)?.toString() ?: DEFAULT_H264_MAX_LEVEL)
     }.toString()
 
     companion object {
         private const val EXTERNAL_PLAYER_PROFILE_NAME = Constants.APP_INFO_NAME + " External Player"
         private const val DEFAULT_H264_MAX_LEVEL = "41"
+        private const val CAPABILITIES_CACHE_FILE = "device_capabilities.json"
+
+        /**
+         * Passthrough formats the server can encode to.
+         */
+        private val ENCODABLE_PASSTHROUGH_CODECS = setOf("ac3", "eac3")
+
+        /**
+         * Dolby Vision with a backwards compatible base layer, as named by the server.
+         */
+        private const val VIDEO_RANGE_DOVI_WITH_SDR = "DOVIWithSDR"
+        private const val VIDEO_RANGE_DOVI_WITH_HDR10 = "DOVIWithHDR10"
+        private const val VIDEO_RANGE_DOVI_WITH_HDR10_PLUS = "DOVIWithHDR10Plus"
+        private const val VIDEO_RANGE_DOVI_WITH_HLG = "DOVIWithHLG"
 
         /**
          * List of container formats supported by ExoPlayer
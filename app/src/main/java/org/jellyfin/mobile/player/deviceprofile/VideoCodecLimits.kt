@@ -0,0 +1,80 @@
+package org.jellyfin.mobile.player.deviceprofile
+
+import android.media.MediaCodecInfo.VideoCapabilities
+import android.media.MediaCodecInfo.VideoCapabilities.PerformancePoint
+import kotlinx.serialization.Serializable
+import org.jellyfin.mobile.utils.AndroidVersion
+import kotlin.math.max
+
+/**
+ * The sizes and frame rates a video decoder can play back smoothly.
+ *
+ * @param maxWidth the maximum supported width.
+ * @param maxHeight the maximum supported height.
+ * @param maxFrameRates the maximum frame rate for each of the [SIZES], 0 if the size isn't supported,
+ * or [BELOW_MIN_FRAME_RATE] if it's only supported below the lowest of the [FRAME_RATES].
+ */
+@Serializable
+data class VideoCodecLimits(
+    val maxWidth: Int,
+    val maxHeight: Int,
+    val maxFrameRates: List<Int>,
+) {
+    fun mergeLimits(limitsToMerge: VideoCodecLimits): VideoCodecLimits = VideoCodecLimits(
+        maxWidth = max(maxWidth, limitsToMerge.maxWidth),
+        maxHeight = max(maxHeight, limitsToMerge.maxHeight),
+        maxFrameRates = maxFrameRates.zip(limitsToMerge.maxFrameRates, ::max),
+    )
+
+    companion object {
+        /**
+         * Common video sizes the frame rate limits are determined for, in ascending order.
+         */
+        val SIZES = listOf(
+            1280 to 720,
+            1920 to 1080,
+            2560 to 1440,
+            3840 to 2160,
+            7680 to 4320,
+        )
+
+        /**
+         * Common frame rates, in descending order.
+         */
+        val FRAME_RATES = listOf(120, 60, 50, 30, 25, 24)
+
+        /**
+         * Marks a size that is supported, but not at any of the [FRAME_RATES].
+         *
+         * Still orders above an unsupported size, so merging limits keeps it.
+         */
+        const val BELOW_MIN_FRAME_RATE = 1
+
+        fun from(capabilities: VideoCapabilities): VideoCodecLimits = VideoCodecLimits(
+            maxWidth = capabilities.supportedWidths.upper,
+            maxHeight = capabilities.supportedHeights.upper,
+            maxFrameRates = SIZES.map { (width, height) -> getMaxFrameRate(capabilities, width, height) },
+        )
+
+        /**
+         * Get the highest of the [FRAME_RATES] the decoder can sustain at the given size.
+         *
+         * Performance points, where the vendor declares them, describe what the decoder actually achieves.
+         * Otherwise this falls back to the frame rates the decoder advertises for the size.
+         */
+        private fun getMaxFrameRate(capabilities: VideoCapabilities, width: Int, height: Int): Int {
+            if (!capabilities.isSizeSupported(width, height)) return 0
+
+            val performancePoints = if (AndroidVersion.isAtLeastQ) capabilities.supportedPerformancePoints else null
+            return FRAME_RATES.firstOrNull { frameRate ->
+                when {
+                    !performancePoints.isNullOrEmpty() -> {
+                        val requiredPoint = PerformancePoint(width, height, frameRate)
+                        performancePoints.any { point -> point.covers(requiredPoint) }
+                    }
+                    else -> capabilities.areSizeAndRateSupported(width, height, frameRate.toDouble())
+                }
+            } ?: BELOW_MIN_FRAME_RATE
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package org.jellyfin.mobile.player.journal
+
+enum class PlaybackEvent {
+    START,
+    PROGRESS,
+    STOP,
+}
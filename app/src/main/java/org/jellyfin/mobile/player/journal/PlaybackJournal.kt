@@ -0,0 +1,110 @@
+package org.jellyfin.mobile.player.journal
+
+import android.content.Context
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.data.dao.PlaybackJournalDao
+import org.jellyfin.mobile.data.entity.PlaybackJournalEntity
+import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
+import org.jellyfin.sdk.api.client.extensions.itemsApi
+import org.jellyfin.sdk.model.api.UpdateUserItemDataDto
+import timber.log.Timber
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.util.UUID
+
+/**
+ * Write-ahead journal for playback reports.
+ *
+ * Every playback event is stored before it is reported to the server and only removed once the server acknowledged it,
+ * so resume points survive flaky networks and offline playback. Progress is coalesced to the latest event per item.
+ * Unacknowledged entries are replayed by [PlaybackJournalWorker] once connectivity returns.
+ */
+class PlaybackJournal(
+    private val context: Context,
+    private val appPreferences: AppPreferences,
+    private val playbackJournalDao: PlaybackJournalDao,
+) {
+    /**
+     * Record a playback [event] of [itemId] at [positionTicks].
+     *
+     * @param report the live report for the current play session, or null if playback is offline.
+     */
+    suspend fun record(
+        itemId: UUID,
+        event: PlaybackEvent,
+        positionTicks: Long,
+        finished: Boolean = false,
+        report: (suspend () -> Unit)? = null,
+    ) {
+        val userId = appPreferences.currentUserId ?: return
+        val id = withContext(Dispatchers.IO) {
+            playbackJournalDao.append(PlaybackJournalEntity(userId, itemId, event, positionTicks, finished))
+        }
+
+        if (report != null) {
+            try {
+                withContext(Dispatchers.IO) { report() }
+                withContext(Dispatchers.IO) { playbackJournalDao.deleteUpTo(userId, itemId, id) }
+                return
+            } catch (e: ApiClientException) {
+                Timber.e(e, "Failed to report playback %s, keeping it for later", event)
+            }
+        }
+
+        // Progress is picked up by the sync scheduled for the following stop event
+        if (event != PlaybackEvent.PROGRESS) {
+            PlaybackJournalWorker.start(context)
+        }
+    }
+
+    /**
+     * Replay all pending entries of [userId] through [api].
+     *
+     * Entries are reduced to the latest state per item. That state is only applied if the server hasn't seen a more
+     * recent playback of the item, based on the `LastPlayedDate` of the user data.
+     *
+     * @return true if all entries could be synced.
+     */
+    suspend fun sync(api: ApiClient, userId: Long): Boolean {
+        val entries = withContext(Dispatchers.IO) { playbackJournalDao.getEntries(userId) }
+        var success = true
+
+        for ((itemId, itemEntries) in entries.groupBy(PlaybackJournalEntity::itemId)) {
+            val latest = itemEntries.last()
+            try {
+                withContext(Dispatchers.IO) {
+                    replay(api, latest)
+                    playbackJournalDao.deleteUpTo(userId, itemId, latest.id)
+                }
+            } catch (e: ApiClientException) {
+                Timber.e(e, "Failed to sync playback state of %s", itemId)
+                success = false
+            }
+        }
+
+        return success
+    }
+
+    private suspend fun replay(api: ApiClient, entry: PlaybackJournalEntity) {
+        val playedDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZoneOffset.UTC)
+        val serverUserData by api.itemsApi.getItemUserData(itemId = entry.itemId)
+        val serverPlayedDate = serverUserData.lastPlayedDate
+        if (serverPlayedDate != null && serverPlayedDate >= playedDate) {
+            Timber.d("Skipping outdated playback state of %s", entry.itemId)
+            return
+        }
+
+        api.itemsApi.updateItemUserData(
+            itemId = entry.itemId,
+            data = UpdateUserItemDataDto(
+                playbackPositionTicks = if (entry.finished) 0 else entry.positionTicks,
+                played = if (entry.finished) true else null,
+                lastPlayedDate = playedDate,
+            ),
+        )
+    }
+}
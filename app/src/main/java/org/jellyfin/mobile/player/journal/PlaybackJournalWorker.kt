@@ -0,0 +1,70 @@
+package org.jellyfin.mobile.player.journal
+
+import android.content.Context
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import androidx.work.WorkerParameters
+import androidx.work.await
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.app.ApiClientController
+import org.jellyfin.mobile.data.dao.PlaybackJournalDao
+import org.jellyfin.mobile.data.dao.UserDao
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
+import timber.log.Timber
+
+/**
+ * Replays pending [PlaybackJournal] entries once the device is online.
+ */
+class PlaybackJournalWorker(
+    context: Context,
+    parameters: WorkerParameters,
+) : CoroutineWorker(context, parameters), KoinComponent {
+    companion object {
+        private val tag = PlaybackJournalWorker::class.qualifiedName!!
+
+        suspend fun start(context: Context) {
+            val request = OneTimeWorkRequestBuilder<PlaybackJournalWorker>().apply {
+                addTag(tag)
+                setConstraints(
+                    Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build(),
+                )
+            }.build()
+
+            // Append so that entries recorded while a sync is running are picked up by the next run
+            WorkManager.getInstance(context).enqueueUniqueWork(tag, ExistingWorkPolicy.APPEND_OR_REPLACE, request).await()
+        }
+    }
+
+    private val apiClientController by inject<ApiClientController>()
+    private val playbackJournal by inject<PlaybackJournal>()
+    private val playbackJournalDao by inject<PlaybackJournalDao>()
+    private val userDao by inject<UserDao>()
+
+    override suspend fun doWork(): Result {
+        var success = true
+        for (userId in playbackJournalDao.getPendingUsers()) {
+            try {
+                val api = withContext(Dispatchers.IO) {
+                    val user = userDao.getUser(userId) ?: return@withContext null
+                    apiClientController.getApiClient(user.serverId, user.id)
+                } ?: continue
+                success = playbackJournal.sync(api, userId) && success
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: IllegalStateException) {
+                Timber.e(e, "Cannot sync playback journal of user %d", userId)
+            }
+        }
+
+        return if (success) Result.success() else Result.retry()
+    }
+}
@@ -1,18 +1,34 @@
 package org.jellyfin.mobile.player.mediasegments
 
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.data.dao.MediaSegmentDao
+import org.jellyfin.mobile.data.entity.MediaSegmentCacheEntity
 import org.jellyfin.mobile.utils.extensions.duration
 import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
+import org.jellyfin.sdk.api.client.extensions.itemsApi
 import org.jellyfin.sdk.api.client.extensions.mediaSegmentsApi
 import org.jellyfin.sdk.api.operations.MediaSegmentsApi
 import org.jellyfin.sdk.model.api.BaseItemDto
 import org.jellyfin.sdk.model.api.MediaSegmentDto
 import org.jellyfin.sdk.model.api.MediaSegmentType
+import org.jellyfin.sdk.model.api.MediaType
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.get
 import org.koin.core.component.inject
+import timber.log.Timber
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.days
 import kotlin.time.Duration.Companion.seconds
 
 fun Map<MediaSegmentType, MediaSegmentAction>.toMediaSegmentActionsString(): String {
@@ -21,6 +37,24 @@ fun Map<MediaSegmentType, MediaSegmentAction>.toMediaSegmentActionsString(): Str
     }.joinToString(",")
 }
 
+fun String.toMediaSegmentActions(): Map<MediaSegmentType, MediaSegmentAction> {
+    return split(",").mapNotNull {
+        val (type, action) = it.split('=', limit = 2).takeIf { parts -> parts.size == 2 } ?: return@mapNotNull null
+        try {
+            MediaSegmentType.fromName(type) to MediaSegmentAction.valueOf(action)
+        } catch (e: IllegalArgumentException) {
+            null
+        }
+    }.toMap()
+}
+
+/**
+ * Provides the media segments of items, backed by a persistent cache.
+ *
+ * Segments of upcoming items are prefetched, so that skip actions can be armed right when playback starts,
+ * even on slow networks or offline. Cached segments are refreshed once they're older than [CACHE_MAX_AGE],
+ * but still used if refreshing fails.
+ */
 class MediaSegmentRepository : KoinComponent {
     companion object {
         /**
@@ -38,51 +72,37 @@ class MediaSegmentRepository : KoinComponent {
          * The minimum duration for a media segment to allow the [MediaSegmentAction.SKIP] action.
          */
         val SKIP_MIN_DURATION = 1.seconds
+
+        /**
+         * The age after which cached segments are refreshed.
+         */
+        val CACHE_MAX_AGE = 1.days
+
+        /**
+         * The number of continue watching items to prefetch segments for.
+         */
+        private const val RESUME_ITEMS_LIMIT = 12
     }
 
     private val appPreferences: AppPreferences by inject()
     private val apiClient: ApiClient = get()
     private val mediaSegmentsApi: MediaSegmentsApi = apiClient.mediaSegmentsApi
-
-    private val mediaTypeActions = mutableMapOf<MediaSegmentType, MediaSegmentAction>()
-
-    init {
-        restoreMediaTypeActions()
-    }
-
-    private fun restoreMediaTypeActions() {
-        val restoredMediaTypeActions = appPreferences.mediaSegmentActions
-            .split(",")
-            .mapNotNull {
-                val (type, action) = it.split('=', limit = 2)
-                try {
-                    MediaSegmentType.fromName(type) to MediaSegmentAction.valueOf(action)
-                } catch (e: IllegalArgumentException) {
-                    null
-                }
-            }
-
-        mediaTypeActions.clear()
-        mediaTypeActions.putAll(restoredMediaTypeActions)
-    }
-
-    private fun saveMediaTypeActions() {
-        appPreferences.mediaSegmentActions = mediaTypeActions.toMediaSegmentActionsString()
-    }
+    private val mediaSegmentDao: MediaSegmentDao by inject()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val fetchJobs = ConcurrentHashMap<UUID, Deferred<List<MediaSegmentDto>?>>()
 
     fun getDefaultSegmentTypeAction(type: MediaSegmentType): MediaSegmentAction {
         // Always return no action for unsupported types
         if (!SUPPORTED_TYPES.contains(type)) return MediaSegmentAction.NOTHING
 
-        return mediaTypeActions.getOrDefault(type, MediaSegmentAction.NOTHING)
+        return appPreferences.mediaSegmentActions[type] ?: MediaSegmentAction.NOTHING
     }
 
     fun setDefaultSegmentTypeAction(type: MediaSegmentType, action: MediaSegmentAction) {
         // Don't allow modifying actions for unsupported types
         if (!SUPPORTED_TYPES.contains(type)) return
 
-        mediaTypeActions[type] = action
-        saveMediaTypeActions()
+        appPreferences.mediaSegmentActions += type to action
     }
 
     fun getMediaSegmentAction(segment: MediaSegmentDto): MediaSegmentAction {
@@ -92,12 +112,108 @@ class MediaSegmentRepository : KoinComponent {
         return action
     }
 
-    suspend fun getSegmentsForItem(item: BaseItemDto): List<MediaSegmentDto> = runCatching {
-        withContext(Dispatchers.IO) {
-            mediaSegmentsApi.getItemSegments(
-                itemId = item.id,
+    suspend fun getSegmentsForItem(item: BaseItemDto): List<MediaSegmentDto> {
+        val userId = appPreferences.currentUserId ?: return fetchSegments(item.id).await().orEmpty()
+        val cached = withContext(Dispatchers.IO) { mediaSegmentDao.getSegments(userId, item.id) }
+        if (cached != null && !cached.isExpired()) return cached.segments
+
+        return fetchSegments(item.id).await() ?: cached?.segments.orEmpty()
+    }
+
+    /**
+     * Get the segments of [itemId] that are skipped automatically, so that playback and buffering can avoid them.
+     *
+     * To not delay playback, this only uses cached segments, even if they're outdated, and never waits for a request.
+     * Without cached segments, the skip actions armed once the item started playing still apply.
+     */
+    suspend fun getAutoSkipSegments(itemId: UUID): List<MediaSegmentDto> {
+        val cached = appPreferences.currentUserId?.let { userId ->
+            withContext(Dispatchers.IO) { mediaSegmentDao.getSegments(userId, itemId) }
+        }
+        return cached?.segments.orEmpty().filter { segment -> getMediaSegmentAction(segment) == MediaSegmentAction.SKIP }
+    }
+
+    /**
+     * Load the segments of [itemIds] into the cache in the background, unless they're cached already.
+     */
+    fun prefetchSegments(itemIds: Collection<UUID>) {
+        val userId = appPreferences.currentUserId ?: return
+        if (itemIds.isEmpty()) return
+
+        scope.launch {
+            val cachedItemIds = mediaSegmentDao.getItemIdsCachedSince(userId, itemIds, expiredBefore()).toSet()
+            itemIds.filterNot(cachedItemIds::contains).forEach { itemId -> fetchSegments(itemId).await() }
+        }
+    }
+
+    /**
+     * Prefetch the segments of the continue watching items of [userId] through [api].
+     */
+    suspend fun sync(api: ApiClient, userId: Long) {
+        val resumeItems = api.itemsApi.getResumeItems(
+            limit = RESUME_ITEMS_LIMIT,
+            mediaTypes = listOf(MediaType.VIDEO),
+            enableUserData = false,
+            enableImages = false,
+        ).content.items
+
+        val itemIds = resumeItems.map(BaseItemDto::id)
+        val cachedItemIds = withContext(Dispatchers.IO) {
+            mediaSegmentDao.getItemIdsCachedSince(userId, itemIds, expiredBefore()).toSet()
+        }
+        for (itemId in itemIds.filterNot(cachedItemIds::contains)) {
+            val segments = api.mediaSegmentsApi.getItemSegments(
+                itemId = itemId,
                 includeSegmentTypes = SUPPORTED_TYPES,
             ).content.items
+            withContext(Dispatchers.IO) {
+                mediaSegmentDao.insertSegments(MediaSegmentCacheEntity(userId, itemId, segments))
+            }
         }
-    }.getOrDefault(emptyList())
+    }
+
+    /**
+     * Remove all cached segments that haven't been refreshed within [maxAge], except for those of downloaded items.
+     */
+    suspend fun trim(maxAge: Duration) = withContext(Dispatchers.IO) {
+        mediaSegmentDao.deleteSegmentsCachedBefore(System.currentTimeMillis() - maxAge.inWholeMilliseconds)
+    }
+
+    /**
+     * Fetch the segments of [itemId] from the server and store them in the cache.
+     * Concurrent requests for the same item share a single fetch.
+     *
+     * @return the segments, or null if the request failed.
+     */
+    private fun fetchSegments(itemId: UUID): Deferred<List<MediaSegmentDto>?> {
+        fetchJobs[itemId]?.let { job -> return job }
+
+        val job = scope.async(start = CoroutineStart.LAZY) {
+            try {
+                val segments = mediaSegmentsApi.getItemSegments(
+                    itemId = itemId,
+                    includeSegmentTypes = SUPPORTED_TYPES,
+                ).content.items
+                appPreferences.currentUserId?.let { userId ->
+                    mediaSegmentDao.insertSegments(MediaSegmentCacheEntity(userId, itemId, segments))
+                }
+                segments
+            } catch (e: ApiClientException) {
+                Timber.e(e, "Failed to fetch media segments of %s", itemId)
+                null
+            }
+        }
+        fetchJobs.putIfAbsent(itemId, job)?.let { existing ->
+            // Already fetching
+            job.cancel()
+            return existing
+        }
+        job.invokeOnCompletion { fetchJobs.remove(itemId, job) }
+        job.start()
+        return job
+    }
+
+    private fun expiredBefore() = System.currentTimeMillis() - CACHE_MAX_AGE.inWholeMilliseconds
+
+    private fun MediaSegmentCacheEntity.isExpired() = cachedAt < expiredBefore()
 }
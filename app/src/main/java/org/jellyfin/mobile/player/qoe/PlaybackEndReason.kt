@@ -0,0 +1,7 @@
+package org.jellyfin.mobile.player.qoe
+
+enum class PlaybackEndReason {
+    COMPLETED,
+    EXIT,
+    ERROR,
+}
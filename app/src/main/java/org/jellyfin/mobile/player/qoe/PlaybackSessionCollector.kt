@@ -0,0 +1,217 @@
+package org.jellyfin.mobile.player.qoe
+
+import android.os.SystemClock
+import androidx.media3.common.C
+import androidx.media3.common.Format
+import androidx.media3.common.PlaybackException
+import androidx.media3.common.Player
+import androidx.media3.exoplayer.DecoderReuseEvaluation
+import androidx.media3.exoplayer.analytics.AnalyticsListener
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.serialization.json.Json
+import org.jellyfin.mobile.app.AppPreferences
+import org.jellyfin.mobile.player.source.JellyfinMediaSource
+import org.jellyfin.mobile.player.source.RemoteJellyfinMediaSource
+import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
+import org.jellyfin.sdk.api.client.extensions.clientLogApi
+import org.jellyfin.sdk.model.api.PlayMethod
+import timber.log.Timber
+import java.util.UUID
+
+/**
+ * Aggregates the quality of experience of each played item into a [PlaybackSessionSummary].
+ *
+ * A session covers all media sources of an item, so restarts with a different bitrate, audio track or play method
+ * are part of the same session. Summaries are kept in the [PlaybackSessionStore] and, if enabled by the user,
+ * uploaded to the client log of the server.
+ */
+class PlaybackSessionCollector(
+    private val appPreferences: AppPreferences,
+    private val apiClient: ApiClient,
+    private val playbackSessionStore: PlaybackSessionStore,
+) : AnalyticsListener {
+    private var session: Session? = null
+
+    /**
+     * Start a new session, unless the [mediaSource] replaces the source of the item in the current session.
+     */
+    fun onMediaSourceStarted(mediaSource: JellyfinMediaSource) {
+        val session = session
+        if (session != null && session.itemId == mediaSource.itemId) {
+            val bitrate = (mediaSource as? RemoteJellyfinMediaSource)?.maxStreamingBitrate
+            if (bitrate != session.maxStreamingBitrate) {
+                session.maxStreamingBitrate = bitrate
+                session.bitrateSwitches++
+            }
+            return
+        }
+
+        finish(PlaybackEndReason.EXIT)
+        this.session = Session(
+            itemId = mediaSource.itemId,
+            playMethod = mediaSource.playMethod,
+            isRemote = mediaSource is RemoteJellyfinMediaSource,
+            maxStreamingBitrate = (mediaSource as? RemoteJellyfinMediaSource)?.maxStreamingBitrate,
+        )
+    }
+
+    /**
+     * Playback was restarted with a different decoder or play method after an error.
+     */
+    fun onFallback() {
+        session?.run { fallbacks++ }
+    }
+
+    /**
+     * Playback of [itemId] stopped, either because it [hasFinished] or because the user left.
+     */
+    fun onPlaybackStopped(itemId: UUID, hasFinished: Boolean) {
+        if (session?.itemId != itemId) return
+        finish(if (hasFinished) PlaybackEndReason.COMPLETED else PlaybackEndReason.EXIT)
+    }
+
+    /**
+     * Playback failed for good, after all fallbacks were exhausted.
+     */
+    fun onPlaybackFailed(error: PlaybackException) {
+        session?.error = error.errorCodeName
+        finish(PlaybackEndReason.ERROR)
+    }
+
+    override fun onPlaybackStateChanged(eventTime: AnalyticsListener.EventTime, state: Int) {
+        val session = session ?: return
+        val now = eventTime.realtimeMs
+        when (state) {
+            Player.STATE_BUFFERING -> {
+                // Seeks and the initial load always need to buffer, only stalls during playback are of interest
+                if (session.hasBeenReady && !session.isSeeking && session.rebufferStartMs == C.TIME_UNSET) {
+                    session.rebufferStartMs = now
+                }
+            }
+            Player.STATE_READY -> {
+                session.endRebuffer(now)
+                session.hasBeenReady = true
+                session.isSeeking = false
+            }
+            else -> session.endRebuffer(now)
+        }
+    }
+
+    override fun onIsPlayingChanged(eventTime: AnalyticsListener.EventTime, isPlaying: Boolean) {
+        val session = session ?: return
+        val now = eventTime.realtimeMs
+        if (isPlaying) {
+            session.playStartMs = now
+        } else if (session.playStartMs != C.TIME_UNSET) {
+            session.playTimeMs += now - session.playStartMs
+            session.playStartMs = C.TIME_UNSET
+        }
+    }
+
+    override fun onPositionDiscontinuity(
+        eventTime: AnalyticsListener.EventTime,
+        oldPosition: Player.PositionInfo,
+        newPosition: Player.PositionInfo,
+        reason: Int,
+    ) {
+        val session = session ?: return
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            session.isSeeking = true
+            session.rebufferStartMs = C.TIME_UNSET
+        }
+    }
+
+    override fun onDroppedVideoFrames(eventTime: AnalyticsListener.EventTime, droppedFrames: Int, elapsedMs: Long) {
+        session?.run { this.droppedFrames += droppedFrames }
+    }
+
+    override fun onVideoInputFormatChanged(
+        eventTime: AnalyticsListener.EventTime,
+        format: Format,
+        decoderReuseEvaluation: DecoderReuseEvaluation?,
+    ) {
+        val session = session ?: return
+        if (format.bitrate == Format.NO_VALUE) return
+        if (session.videoBitrate != Format.NO_VALUE && session.videoBitrate != format.bitrate) {
+            session.bitrateSwitches++
+        }
+        session.videoBitrate = format.bitrate
+    }
+
+    override fun onPlayerError(eventTime: AnalyticsListener.EventTime, error: PlaybackException) {
+        session?.error = error.errorCodeName
+    }
+
+    private fun finish(endReason: PlaybackEndReason) {
+        val session = session ?: return
+        this.session = null
+
+        val now = SystemClock.elapsedRealtime()
+        session.endRebuffer(now)
+        if (session.playStartMs != C.TIME_UNSET) session.playTimeMs += now - session.playStartMs
+
+        val summary = session.toSummary(endReason)
+        Timber.i("Playback session summary: %s", summary)
+        playbackSessionStore.add(summary)
+
+        if (session.isRemote && appPreferences.exoPlayerSubmitPlaybackStats) {
+            submit(summary)
+        }
+    }
+
+    private fun submit(summary: PlaybackSessionSummary) {
+        // Playback might be finishing because the player is torn down, so this can't be bound to its scope
+        CoroutineScope(Dispatchers.IO).launch {
+            try {
+                apiClient.clientLogApi.logFile(Json.encodeToString(summary).toByteArray())
+            } catch (e: ApiClientException) {
+                Timber.e(e, "Failed to submit playback session summary")
+            }
+        }
+    }
+
+    private class Session(
+        val itemId: UUID,
+        val playMethod: PlayMethod,
+        val isRemote: Boolean,
+        var maxStreamingBitrate: Int?,
+    ) {
+        val timestamp = System.currentTimeMillis()
+        var hasBeenReady = false
+        var isSeeking = false
+        var playStartMs = C.TIME_UNSET
+        var playTimeMs = 0L
+        var rebufferStartMs = C.TIME_UNSET
+        var rebufferCount = 0
+        var rebufferTimeMs = 0L
+        var droppedFrames = 0
+        var videoBitrate = Format.NO_VALUE
+        var bitrateSwitches = 0
+        var fallbacks = 0
+        var error: String? = null
+
+        fun endRebuffer(now: Long) {
+            if (rebufferStartMs == C.TIME_UNSET) return
+            rebufferCount++
+            rebufferTimeMs += now - rebufferStartMs
+            rebufferStartMs = C.TIME_UNSET
+        }
+
+        fun toSummary(endReason: PlaybackEndReason) = PlaybackSessionSummary(
+            itemId = itemId,
+            timestamp = timestamp,
+            playMethod = playMethod,
+            playTimeMs = playTimeMs,
+            rebufferCount = rebufferCount,
+            rebufferTimeMs = rebufferTimeMs,
+            droppedFrames = droppedFrames,
+            bitrateSwitches = bitrateSwitches,
+            fallbacks = fallbacks,
+            endReason = endReason,
+            error = error,
+        )
+    }
+}
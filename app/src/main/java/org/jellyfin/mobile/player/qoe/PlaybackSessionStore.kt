@@ -0,0 +1,54 @@
+package org.jellyfin.mobile.player.qoe
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.core.content.edit
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.json.Json
+import timber.log.Timber
+
+/**
+ * Keeps the most recent [PlaybackSessionSummary]s on the device, older ones are dropped once [MAX_SUMMARIES] is reached.
+ */
+class PlaybackSessionStore(context: Context) {
+    private val sharedPreferences: SharedPreferences =
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+
+    private val _summaries = MutableStateFlow(loadSummaries())
+
+    /**
+     * The stored summaries, oldest first.
+     */
+    val summaries: StateFlow<List<PlaybackSessionSummary>>
+        get() = _summaries.asStateFlow()
+
+    fun add(summary: PlaybackSessionSummary) {
+        val summaries = (_summaries.value + summary).takeLast(MAX_SUMMARIES)
+        _summaries.value = summaries
+        sharedPreferences.edit { putString(KEY_SUMMARIES, Json.encodeToString(summaries)) }
+    }
+
+    fun clear() {
+        _summaries.value = emptyList()
+        sharedPreferences.edit { remove(KEY_SUMMARIES) }
+    }
+
+    private fun loadSummaries(): List<PlaybackSessionSummary> {
+        val json = sharedPreferences.getString(KEY_SUMMARIES, null) ?: return emptyList()
+        return try {
+            Json.decodeFromString(json)
+        } catch (e: SerializationException) {
+            Timber.e(e, "Failed to load playback session summaries")
+            emptyList()
+        }
+    }
+
+    companion object {
+        private const val PREFERENCES_NAME = "playback_sessions"
+        private const val KEY_SUMMARIES = "summaries"
+        private const val MAX_SUMMARIES = 100
+    }
+}
@@ -0,0 +1,33 @@
+package org.jellyfin.mobile.player.qoe
+
+import kotlinx.serialization.Serializable
+import org.jellyfin.sdk.model.api.PlayMethod
+import org.jellyfin.sdk.model.serializer.UUIDSerializer
+import java.util.UUID
+
+/**
+ * Quality of experience of the playback of a single item, collected by [PlaybackSessionCollector].
+ *
+ * @param timestamp the wall clock time playback of the item started at, in milliseconds since the epoch.
+ * @param playMethod the play method the item started with.
+ * @param playTimeMs the time spent actually playing, excluding pauses and buffering.
+ * @param rebufferCount the number of times playback stalled, buffering after seeks doesn't count.
+ * @param bitrateSwitches the number of times the video bitrate changed during playback.
+ * @param fallbacks the number of times playback was restarted with a different decoder or play method after an error.
+ * @param error the error code of the last playback error, if any.
+ */
+@Serializable
+data class PlaybackSessionSummary(
+    @Serializable(with = UUIDSerializer::class)
+    val itemId: UUID,
+    val timestamp: Long,
+    val playMethod: PlayMethod,
+    val playTimeMs: Long,
+    val rebufferCount: Int,
+    val rebufferTimeMs: Long,
+    val droppedFrames: Int,
+    val bitrateSwitches: Int,
+    val fallbacks: Int,
+    val endReason: PlaybackEndReason,
+    val error: String?,
+)
@@ -23,6 +23,11 @@ class QualityOptionsProvider {
         QualityOption(maxHeight = 0, bitrate = 0), // auto
     )
 
+    /**
+     * Bitrates of the quality ladder in descending order, without "auto".
+     */
+    private val streamingBitrates = defaultQualityOptions.map(QualityOption::bitrate).filter { bitrate -> bitrate > 0 }
+
     @Suppress("MagicNumber")
     fun getApplicableQualityOptions(videoWidth: Int, videoHeight: Int): List<QualityOption> {
         // If the aspect ratio is less than 16/9, set the width as if it were pillarboxed
@@ -43,4 +48,33 @@ class QualityOptionsProvider {
 
         return defaultQualityOptions.takeLastWhile { option -> option.maxHeight <= maxAllowedHeight }
     }
+
+    /**
+     * The highest bitrate of the quality ladder that can be streamed over a connection with the given [bandwidth].
+     * Falls back to the lowest quality if the connection is even slower than that.
+     *
+     * @return the bitrate, or null if the connection can handle the highest quality and shouldn't limit playback.
+     */
+    fun getBitrateForBandwidth(bandwidth: Long): Int? {
+        val usableBandwidth = (bandwidth * BANDWIDTH_UTILIZATION).toLong()
+        val bitrate = streamingBitrates.firstOrNull { bitrate -> bitrate <= usableBandwidth } ?: streamingBitrates.last()
+        return bitrate.takeIf { bitrate != streamingBitrates.first() }
+    }
+
+    /**
+     * The next lower step of the quality ladder below [bitrate], or null if there is none.
+     */
+    fun getLowerBitrate(bitrate: Int): Int? = streamingBitrates.firstOrNull { step -> step < bitrate }
+
+    /**
+     * The next higher step of the quality ladder above [bitrate], or null if there is none.
+     */
+    fun getHigherBitrate(bitrate: Int): Int? = streamingBitrates.lastOrNull { step -> step > bitrate }
+
+    companion object {
+        /**
+         * Share of the measured bandwidth a stream may use, leaves room for fluctuations and other traffic.
+         */
+        private const val BANDWIDTH_UTILIZATION = 0.7
+    }
 }
@@ -0,0 +1,237 @@
+package org.jellyfin.mobile.player.qualityoptions
+
+import android.os.SystemClock
+import androidx.core.net.toUri
+import androidx.media3.common.C
+import androidx.media3.common.Player
+import androidx.media3.exoplayer.analytics.AnalyticsListener
+import androidx.media3.exoplayer.source.LoadEventInfo
+import androidx.media3.exoplayer.source.MediaLoadData
+import androidx.media3.exoplayer.upstream.BandwidthMeter
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import org.jellyfin.mobile.player.source.JellyfinMediaSource
+import org.jellyfin.mobile.player.source.RemoteJellyfinMediaSource
+import org.jellyfin.sdk.model.api.PlayMethod
+import timber.log.Timber
+
+/**
+ * Adapts the bitrate of transcoded playback to the connection, as the server only provides a single HLS variant.
+ *
+ * Sustained stalls step the bitrate down the quality ladder of [QualityOptionsProvider], while a healthy buffer and
+ * sufficient throughput over a longer period step it back up. Switches are rate limited, so quality doesn't flap.
+ * Only applies while the quality is set to "auto", an explicit choice by the user is never overridden.
+ *
+ * Decisions are driven by player events: stalls by playback state changes, everything else by completed loads,
+ * which is also when the bandwidth estimate changes.
+ * The adapted bitrate only applies to the current item, the next one starts again from the server's choice.
+ * If the server decided to transcode, a choice above what the connection handled previously is lowered right away.
+ *
+ * @param getPersistedEstimate provides the bandwidth estimate persisted for the current server and network, in bps.
+ * @param getMediaSource provides the currently playing media source.
+ * @param isAutoQuality whether the user left the quality at "auto".
+ * @param changeBitrate restarts playback of the current media source with the new maximum bitrate.
+ */
+class TranscodeBitrateController(
+    private val player: Player,
+    private val bandwidthMeter: BandwidthMeter,
+    private val qualityOptionsProvider: QualityOptionsProvider,
+    private val getPersistedEstimate: () -> Long?,
+    private val scope: CoroutineScope,
+    private val getMediaSource: () -> JellyfinMediaSource?,
+    private val isAutoQuality: () -> Boolean,
+    private val changeBitrate: suspend (bitrate: Int) -> Boolean,
+) : Player.Listener, AnalyticsListener {
+    private val stalls = ArrayDeque<Long>()
+    private var stallStartMs = C.TIME_UNSET
+    private var isSeeking = false
+    private var lastSwitchMs = C.TIME_UNSET
+    private var lastHealthyCheckMs = C.TIME_UNSET
+
+    /**
+     * Fires if a stall lasts long enough to count as sustained by itself, loads might not complete at all meanwhile.
+     */
+    private var longStallJob: Job? = null
+    private var switchJob: Job? = null
+
+    fun onMediaSourceStarted(mediaSource: JellyfinMediaSource) {
+        stalls.clear()
+        stallStartMs = C.TIME_UNSET
+        isSeeking = false
+        lastHealthyCheckMs = C.TIME_UNSET
+        longStallJob?.cancel()
+        applyPersistedEstimate(mediaSource)
+    }
+
+    fun release() {
+        longStallJob?.cancel()
+        switchJob?.cancel()
+    }
+
+    override fun onPlaybackStateChanged(playbackState: Int) {
+        val now = SystemClock.elapsedRealtime()
+        when (playbackState) {
+            Player.STATE_BUFFERING -> {
+                // Seeks always need to buffer, only stalls during playback are of interest
+                if (player.playWhenReady && !isSeeking && stallStartMs == C.TIME_UNSET && getActiveMediaSource() != null) {
+                    stallStartMs = now
+                    scheduleLongStallCheck()
+                }
+            }
+            Player.STATE_READY -> {
+                isSeeking = false
+                longStallJob?.cancel()
+                if (stallStartMs != C.TIME_UNSET) {
+                    Timber.d("Playback stalled for %d ms", now - stallStartMs)
+                    stalls.addLast(now)
+                    stallStartMs = C.TIME_UNSET
+                    evaluateDownswitch(now)
+                }
+            }
+            else -> {
+                stallStartMs = C.TIME_UNSET
+                longStallJob?.cancel()
+            }
+        }
+    }
+
+    override fun onPositionDiscontinuity(oldPosition: Player.PositionInfo, newPosition: Player.PositionInfo, reason: Int) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            isSeeking = true
+            stallStartMs = C.TIME_UNSET
+            longStallJob?.cancel()
+        }
+    }
+
+    override fun onLoadCompleted(eventTime: AnalyticsListener.EventTime, loadEventInfo: LoadEventInfo, mediaLoadData: MediaLoadData) {
+        // Loads of the next item while the current one ends say nothing about the current transcode
+        if (mediaLoadData.dataType != C.DATA_TYPE_MEDIA || eventTime.windowIndex != player.currentMediaItemIndex) return
+
+        val now = SystemClock.elapsedRealtime()
+        when {
+            isLongStall(now) -> onLongStall(now)
+            else -> evaluateUpswitch(now)
+        }
+    }
+
+    /**
+     * Start a transcode chosen by the server at the step the connection handled previously, instead of waiting for stalls.
+     *
+     * Sources with an adapted bitrate are left alone, they already reflect the current connection.
+     */
+    private fun applyPersistedEstimate(mediaSource: JellyfinMediaSource) {
+        val activeMediaSource = getActiveMediaSource(mediaSource) ?: return
+        if (activeMediaSource.maxStreamingBitrate != null) return
+        val currentBitrate = activeMediaSource.currentBitrate ?: return
+        val estimate = getPersistedEstimate() ?: return
+        val estimatedBitrate = qualityOptionsProvider.getBitrateForBandwidth(estimate) ?: return
+        if (estimatedBitrate < currentBitrate) switchTo(estimatedBitrate, SystemClock.elapsedRealtime())
+    }
+
+    private fun scheduleLongStallCheck() {
+        longStallJob?.cancel()
+        longStallJob = scope.launch {
+            delay(LONG_STALL_MS)
+            val now = SystemClock.elapsedRealtime()
+            if (isLongStall(now)) onLongStall(now)
+        }
+    }
+
+    private fun isLongStall(now: Long) = stallStartMs != C.TIME_UNSET && now - stallStartMs >= LONG_STALL_MS
+
+    /**
+     * A stall that doesn't end counts as sustained by itself.
+     */
+    private fun onLongStall(now: Long) {
+        stalls.addLast(now)
+        stallStartMs = now
+        scheduleLongStallCheck()
+        evaluateDownswitch(now, isLongStall = true)
+    }
+
+    private fun evaluateDownswitch(now: Long, isLongStall: Boolean = false) {
+        while (stalls.isNotEmpty() && now - stalls.first() > STALL_WINDOW_MS) stalls.removeFirst()
+        if (!isLongStall && stalls.size < MIN_STALLS_FOR_DOWNSWITCH) return
+        if (isInCooldown(now, SWITCH_COOLDOWN_MS)) return
+
+        val mediaSource = getActiveMediaSource() ?: return
+        val currentBitrate = mediaSource.currentBitrate ?: return
+        val lowerBitrate = qualityOptionsProvider.getLowerBitrate(currentBitrate) ?: return
+
+        // Jump further down right away if the measured throughput is far below the next step
+        val throughputBitrate = qualityOptionsProvider.getBitrateForBandwidth(bandwidthMeter.bitrateEstimate) ?: lowerBitrate
+        switchTo(minOf(lowerBitrate, throughputBitrate), now)
+    }
+
+    private fun evaluateUpswitch(now: Long) {
+        if (player.playbackState != Player.STATE_READY || !player.playWhenReady) {
+            lastHealthyCheckMs = C.TIME_UNSET
+            return
+        }
+        while (stalls.isNotEmpty() && now - stalls.first() > STALL_WINDOW_MS) stalls.removeFirst()
+        if (stalls.isNotEmpty() || player.totalBufferedDuration < HEALTHY_BUFFER_MS) {
+            lastHealthyCheckMs = C.TIME_UNSET
+            return
+        }
+
+        // Playback needs to stay healthy for a while before the bitrate is increased
+        if (lastHealthyCheckMs == C.TIME_UNSET) lastHealthyCheckMs = now
+        if (now - lastHealthyCheckMs < UPSWITCH_DELAY_MS || isInCooldown(now, UPSWITCH_DELAY_MS)) return
+
+        val mediaSource = getActiveMediaSource() ?: return
+        val currentBitrate = mediaSource.currentBitrate ?: return
+        val higherBitrate = qualityOptionsProvider.getHigherBitrate(currentBitrate) ?: return
+        val throughputBitrate = qualityOptionsProvider.getBitrateForBandwidth(bandwidthMeter.bitrateEstimate) ?: Int.MAX_VALUE
+        if (throughputBitrate < higherBitrate) return
+
+        switchTo(higherBitrate, now)
+    }
+
+    private fun switchTo(bitrate: Int, now: Long) {
+        if (switchJob?.isActive == true) return
+
+        Timber.i("Switching transcode bitrate to %d", bitrate)
+        lastSwitchMs = now
+        lastHealthyCheckMs = C.TIME_UNSET
+        stalls.clear()
+        switchJob = scope.launch {
+            if (!changeBitrate(bitrate)) {
+                Timber.w("Failed to switch transcode bitrate to %d", bitrate)
+            }
+        }
+    }
+
+    private fun isInCooldown(now: Long, cooldownMs: Long) = lastSwitchMs != C.TIME_UNSET && now - lastSwitchMs < cooldownMs
+
+    /**
+     * The current media source if its bitrate may be adapted.
+     */
+    private fun getActiveMediaSource(currentMediaSource: JellyfinMediaSource? = getMediaSource()): RemoteJellyfinMediaSource? {
+        if (!isAutoQuality()) return null
+        val mediaSource = currentMediaSource as? RemoteJellyfinMediaSource ?: return null
+        return mediaSource.takeIf { mediaSource.playMethod == PlayMethod.TRANSCODE }
+    }
+
+    /**
+     * The bitrate the source is transcoded at, either as requested or as reported in the transcoding URL.
+     */
+    private val RemoteJellyfinMediaSource.currentBitrate: Int?
+        get() {
+            maxStreamingBitrate?.let { bitrate -> return bitrate }
+            val transcodingUri = sourceInfo.transcodingUrl?.toUri() ?: return null
+            val videoBitrate = transcodingUri.getQueryParameter("VideoBitrate")?.toIntOrNull() ?: return null
+            val audioBitrate = transcodingUri.getQueryParameter("AudioBitrate")?.toIntOrNull() ?: 0
+            return videoBitrate + audioBitrate
+        }
+
+    companion object {
+        private const val STALL_WINDOW_MS = 60_000L
+        private const val MIN_STALLS_FOR_DOWNSWITCH = 2
+        private const val LONG_STALL_MS = 8_000L
+        private const val SWITCH_COOLDOWN_MS = 20_000L
+        private const val HEALTHY_BUFFER_MS = 20_000L
+        private const val UPSWITCH_DELAY_MS = 120_000L
+    }
+}
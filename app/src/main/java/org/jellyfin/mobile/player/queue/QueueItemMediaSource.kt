@@ -0,0 +1,169 @@
+package org.jellyfin.mobile.player.queue
+
+import android.os.Handler
+import androidx.media3.common.C
+import androidx.media3.common.MediaItem
+import androidx.media3.common.Timeline
+import androidx.media3.common.util.Util
+import androidx.media3.datasource.TransferListener
+import androidx.media3.exoplayer.source.CompositeMediaSource
+import androidx.media3.exoplayer.source.ForwardingTimeline
+import androidx.media3.exoplayer.source.MediaPeriod
+import androidx.media3.exoplayer.source.MediaSource
+import androidx.media3.exoplayer.upstream.Allocator
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancel
+import org.jellyfin.mobile.player.source.JellyfinMediaSource
+import java.io.IOException
+import java.util.UUID
+import kotlin.time.Duration
+
+/**
+ * Playlist entry for a single queue item that only resolves its actual media source once it is needed.
+ *
+ * With lazy preparation, ExoPlayer prepares playlist entries when it starts buffering them, which is when [resolve] runs,
+ * unless it was already started through [resolveAhead]. Until then, the player uses a placeholder timeline.
+ * Items that are resolved on demand start at the start time of their media source, e.g. after an automatically skipped intro.
+ * The timeline keeps reporting the media item of the queue entry, so that its media id stays the item id once resolved.
+ *
+ * @param resolvedMediaSource the already resolved media source, e.g. for the item playback starts with.
+ * @param defaultPosition the position the player starts the already resolved media source at,
+ * e.g. for a new play session that takes over at a specific position.
+ */
+class QueueItemMediaSource(
+    val itemId: UUID,
+    private val resolve: suspend () -> Result<JellyfinMediaSource>,
+    private val createMediaSource: (JellyfinMediaSource) -> MediaSource,
+    private val onResolved: (QueueItemMediaSource) -> Unit,
+    resolvedMediaSource: JellyfinMediaSource? = null,
+    defaultPosition: Duration? = null,
+) : CompositeMediaSource<Unit>() {
+    private val mediaItem = MediaItem.Builder().setMediaId(itemId.toString()).build()
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main)
+    private var resolveJob: Deferred<MediaSource>? = resolvedMediaSource?.let { source ->
+        CompletableDeferred(createMediaSource(source))
+    }
+
+    /**
+     * The resolved media source, or null if the item hasn't been resolved yet.
+     */
+    @Volatile
+    var jellyfinMediaSource: JellyfinMediaSource? = resolvedMediaSource
+        private set
+
+    /**
+     * The position the player starts the item at when it transitions to it, in microseconds.
+     */
+    @Volatile
+    private var defaultPositionUs = defaultPosition?.inWholeMicroseconds ?: C.TIME_UNSET
+
+    // Only accessed on the playback thread
+    private var playbackHandler: Handler? = null
+    private var childSource: MediaSource? = null
+    private var resolveError: IOException? = null
+
+    /**
+     * Start resolving the item before the player reaches it.
+     */
+    fun resolveAhead() {
+        ensureResolving()
+    }
+
+    /**
+     * Cancel a pending resolution.
+     *
+     * @return the media source if it was already resolved, so that its play session can be cleaned up.
+     */
+    fun discard(): JellyfinMediaSource? {
+        scope.cancel()
+        return jellyfinMediaSource
+    }
+
+    @Synchronized
+    private fun ensureResolving(): Deferred<MediaSource> = resolveJob ?: scope.async {
+        val source = resolve().getOrThrow()
+        jellyfinMediaSource = source
+        defaultPositionUs = source.startTime.inWholeMicroseconds
+        onResolved(this@QueueItemMediaSource)
+        createMediaSource(source)
+    }.also { job -> resolveJob = job }
+
+    override fun getMediaItem(): MediaItem = mediaItem
+
+    override fun prepareSourceInternal(mediaTransferListener: TransferListener?) {
+        super.prepareSourceInternal(mediaTransferListener)
+
+        val handler = Util.createHandlerForCurrentLooper()
+        playbackHandler = handler
+        val job = ensureResolving()
+        job.invokeOnCompletion {
+            handler.post { onResolveCompleted(handler, job) }
+        }
+    }
+
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private fun onResolveCompleted(handler: Handler, job: Deferred<MediaSource>) {
+        // Released in the meantime
+        if (playbackHandler !== handler) return
+
+        val error = job.getCompletionExceptionOrNull()
+        if (error != null) {
+            resolveError = IOException("Failed to resolve queue item $itemId", error)
+            return
+        }
+
+        val source = job.getCompleted()
+        childSource = source
+        prepareChildSource(Unit, source)
+    }
+
+    override fun maybeThrowSourceInfoRefreshError() {
+        resolveError?.let { error -> throw error }
+        super.maybeThrowSourceInfoRefreshError()
+    }
+
+    override fun onChildSourceInfoRefreshed(childSourceId: Unit, mediaSource: MediaSource, newTimeline: Timeline) {
+        refreshSourceInfo(QueueItemTimeline(newTimeline, mediaItem, defaultPositionUs))
+    }
+
+    override fun createPeriod(id: MediaSource.MediaPeriodId, allocator: Allocator, startPositionUs: Long): MediaPeriod {
+        val source = checkNotNull(childSource) { "Queue item $itemId is not resolved yet" }
+        return source.createPeriod(id, allocator, startPositionUs)
+    }
+
+    override fun releasePeriod(mediaPeriod: MediaPeriod) {
+        childSource?.releasePeriod(mediaPeriod)
+    }
+
+    override fun releaseSourceInternal() {
+        super.releaseSourceInternal()
+        playbackHandler = null
+        childSource = null
+        resolveError = null
+    }
+
+    /**
+     * Reports [mediaItem] for all windows of the [timeline], instead of the media item of the resolved source.
+     * Also overrides their default position with [defaultPositionUs], if it's set and within the window.
+     */
+    private class QueueItemTimeline(
+        timeline: Timeline,
+        private val mediaItem: MediaItem,
+        private val defaultPositionUs: Long,
+    ) : ForwardingTimeline(timeline) {
+        override fun getWindow(windowIndex: Int, window: Window, defaultPositionProjectionUs: Long): Window {
+            super.getWindow(windowIndex, window, defaultPositionProjectionUs)
+            window.mediaItem = mediaItem
+            if (defaultPositionUs > 0 && (window.durationUs == C.TIME_UNSET || defaultPositionUs < window.durationUs)) {
+                window.defaultPositionUs = defaultPositionUs
+            }
+            return window
+        }
+    }
+}
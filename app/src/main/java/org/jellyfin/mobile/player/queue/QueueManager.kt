@@ -9,23 +9,31 @@ import androidx.media3.common.MediaItem
 import androidx.media3.common.MimeTypes
 import androidx.media3.exoplayer.source.MediaSource
 import androidx.media3.exoplayer.source.MergingMediaSource
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.app.STREAMING_MEDIA_SOURCE_FACTORY
 import org.jellyfin.mobile.data.dao.DownloadDao
 import org.jellyfin.mobile.downloads.DownloadFileType
 import org.jellyfin.mobile.player.PlayerException
 import org.jellyfin.mobile.player.PlayerViewModel
 import org.jellyfin.mobile.player.deviceprofile.DeviceProfileBuilder
 import org.jellyfin.mobile.player.interaction.PlayOptions
+import org.jellyfin.mobile.player.mediasegments.MediaSegmentRepository
 import org.jellyfin.mobile.player.source.ExternalSubtitleStream
 import org.jellyfin.mobile.player.source.JellyfinMediaSource
 import org.jellyfin.mobile.player.source.LocalJellyfinMediaSource
 import org.jellyfin.mobile.player.source.MediaSourceResolver
 import org.jellyfin.mobile.player.source.PlaybackDetails
 import org.jellyfin.mobile.player.source.RemoteJellyfinMediaSource
+import org.jellyfin.mobile.utils.extensions.end
+import org.jellyfin.mobile.utils.extensions.start
 import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
 import org.jellyfin.sdk.api.client.extensions.videosApi
 import org.jellyfin.sdk.api.operations.VideosApi
+import org.jellyfin.sdk.model.api.DeviceProfile
 import org.jellyfin.sdk.model.api.MediaProtocol
 import org.jellyfin.sdk.model.api.MediaStream
 import org.jellyfin.sdk.model.api.MediaStreamProtocol
@@ -35,6 +43,7 @@ import org.jellyfin.sdk.model.serializer.toUUIDOrNull
 import org.koin.core.component.KoinComponent
 import org.koin.core.component.get
 import org.koin.core.component.inject
+import org.koin.core.qualifier.named
 import timber.log.Timber
 import java.util.UUID
 import kotlin.time.Duration
@@ -47,10 +56,26 @@ class QueueManager(
     private val mediaSourceResolver: MediaSourceResolver by inject()
     private val deviceProfileBuilder: DeviceProfileBuilder by inject()
     private val downloadDao: DownloadDao by inject()
-    private val deviceProfile = deviceProfileBuilder.getDeviceProfile()
+    private val mediaSegmentRepository: MediaSegmentRepository by inject()
+
+    // Built for every request, as it follows the display and audio route
+    private val deviceProfile: DeviceProfile
+        get() = deviceProfileBuilder.getDeviceProfile()
 
     private var currentQueue: List<UUID> = emptyList()
     private var currentQueueIndex: Int = 0
+    private var playFromDownloads = false
+
+    /**
+     * The playlist entries of the player, one per item of [currentQueue].
+     */
+    private var queueItems: List<QueueItemMediaSource> = emptyList()
+
+    /**
+     * The bitrate cap chosen for the queue, applied to items that are resolved on demand. Null if the quality is "auto".
+     */
+    var maxStreamingBitrate: Int? = null
+        private set
 
     private var playbackRetries = 0
     private var lastPlaybackError = 0L
@@ -59,7 +84,16 @@ class QueueManager(
     val currentMediaSource: LiveData<JellyfinMediaSource>
         get() = _currentMediaSource
 
-    fun getCurrentMediaSourceOrNull(): JellyfinMediaSource? = currentMediaSource.value
+    /**
+     * The index of the current item in the queue and the player's playlist.
+     */
+    val currentIndex: Int
+        get() = currentQueueIndex
+
+    /**
+     * Get the media source of the current item, or null if it is still being resolved.
+     */
+    fun getCurrentMediaSourceOrNull(): JellyfinMediaSource? = queueItems.getOrNull(currentQueueIndex)?.jellyfinMediaSource
 
     /**
      * Handle initial playback options from fragment.
@@ -70,12 +104,15 @@ class QueueManager(
     suspend fun initializePlaybackQueue(playOptions: PlayOptions): PlayerException? {
         currentQueue = playOptions.ids
         currentQueueIndex = playOptions.startIndex
+        playFromDownloads = playOptions.playFromDownloads
         resetPlaybackFallback()
 
         val itemId = when {
             currentQueue.isNotEmpty() -> currentQueue[currentQueueIndex]
             else -> playOptions.mediaSourceId?.toUUIDOrNull()
         } ?: return PlayerException.InvalidPlayOptions()
+        viewModel.startupTracer.begin(itemId)
+        prefetchMediaSegments(currentQueueIndex)
 
         when (playOptions.playFromDownloads) {
             true -> playOptions.mediaSourceId?.let {
@@ -105,15 +142,36 @@ class QueueManager(
         subtitleStreamIndex: Int? = null,
         playWhenReady: Boolean = true,
     ): PlayerException? {
+        resolveDownloadMediaSource(
+            itemId = itemId,
+            startTime = getSkipAwareStartTime(itemId, startTime),
+            audioStreamIndex = audioStreamIndex,
+            subtitleStreamIndex = subtitleStreamIndex,
+        ).onSuccess { mediaSource ->
+            viewModel.startupTracer.onMediaSourceResolved(mediaSource)
+            loadQueue(mediaSource, playWhenReady)
+        }.onFailure { error ->
+            return error as? PlayerException
+        }
+
+        return null
+    }
+
+    private suspend fun resolveDownloadMediaSource(
+        itemId: UUID,
+        startTime: Duration? = null,
+        audioStreamIndex: Int? = null,
+        subtitleStreamIndex: Int? = null,
+    ): Result<LocalJellyfinMediaSource> {
         val download = withContext(Dispatchers.IO) {
             downloadDao.getDownloadByItemId(itemId)
-        } ?: return PlayerException.UnsupportedContent()
+        } ?: return Result.failure(PlayerException.UnsupportedContent())
 
         val files = withContext(Dispatchers.IO) {
             downloadDao.getFiles(download.id)
         }
 
-        val mainFile = files.find { it.type == DownloadFileType.ITEM } ?: return PlayerException.NetworkFailure()
+        val mainFile = files.find { it.type == DownloadFileType.ITEM } ?: return Result.failure(PlayerException.NetworkFailure())
 
         val mediaSource = LocalJellyfinMediaSource(
             itemId = download.itemId,
@@ -127,12 +185,7 @@ class QueueManager(
         audioStreamIndex?.let { index -> mediaSource.selectAudioStream(mediaSource.audioStreams[index]) }
         subtitleStreamIndex?.let { index -> mediaSource.selectSubtitleStream(mediaSource.subtitleStreams[index]) }
 
-        _currentMediaSource.value = mediaSource
-
-        // Load new media source
-        viewModel.load(mediaSource, prepareStreams(mediaSource), playWhenReady)
-
-        return null
+        return Result.success(mediaSource)
     }
 
     /**
@@ -156,21 +209,21 @@ class QueueManager(
             mediaSourceId = mediaSourceId,
             deviceProfile = deviceProfile,
             maxStreamingBitrate = maxStreamingBitrate,
-            startTime = startTime,
+            startTime = getSkipAwareStartTime(itemId, startTime),
             audioStreamIndex = audioStreamIndex,
             subtitleStreamIndex = subtitleStreamIndex,
             enableDirectPlay = enableDirectPlay,
             enableDirectStream = enableDirectStream,
         ).onSuccess { jellyfinMediaSource ->
+            viewModel.startupTracer.onMediaSourceResolved(jellyfinMediaSource)
+
             // Ensure transcoding of the current element is stopped
             getCurrentMediaSourceOrNull()?.let { oldMediaSource ->
                 viewModel.stopTranscoding(oldMediaSource as RemoteJellyfinMediaSource)
             }
+            this.maxStreamingBitrate = maxStreamingBitrate
 
-            _currentMediaSource.value = jellyfinMediaSource
-
-            // Load new media source
-            viewModel.load(jellyfinMediaSource, prepareStreams(jellyfinMediaSource), playWhenReady)
+            loadQueue(jellyfinMediaSource, playWhenReady)
         }.onFailure { error ->
             // Should always be of this type, other errors are silently dropped
             return error as? PlayerException
@@ -182,14 +235,149 @@ class QueueManager(
      * Reinitialize current media source without changing settings
      */
     fun tryRestartPlayback() {
-        with(getCurrentMediaSourceOrNull()) {
-            when (this) {
-                is LocalJellyfinMediaSource -> prepareStreams(this)
-                is RemoteJellyfinMediaSource -> prepareStreams(this)
-                null -> return
-            }.let {
-                viewModel.load(this, it, playWhenReady = true)
-            }
+        val mediaSource = getCurrentMediaSourceOrNull() ?: return
+        loadQueue(mediaSource, playWhenReady = true)
+    }
+
+    /**
+     * Load the whole queue into the player, starting with the already resolved [mediaSource] of the current item.
+     * All other items are resolved on demand, shortly before they are played.
+     */
+    private fun loadQueue(mediaSource: JellyfinMediaSource, playWhenReady: Boolean) {
+        release()
+
+        if (currentQueue.isEmpty()) currentQueueIndex = 0
+        val itemIds = currentQueue.ifEmpty { listOf(mediaSource.itemId) }
+        queueItems = itemIds.mapIndexed { index, itemId ->
+            createQueueItem(itemId, resolvedMediaSource = mediaSource.takeIf { index == currentQueueIndex })
+        }
+
+        _currentMediaSource.value = mediaSource
+        viewModel.load(mediaSource, queueItems, currentQueueIndex, playWhenReady)
+    }
+
+    private fun createQueueItem(
+        itemId: UUID,
+        resolvedMediaSource: JellyfinMediaSource? = null,
+        defaultPosition: Duration? = null,
+    ) = QueueItemMediaSource(
+        itemId = itemId,
+        resolve = { resolveQueueItem(itemId) },
+        createMediaSource = ::prepareStreams,
+        onResolved = ::onQueueItemResolved,
+        resolvedMediaSource = resolvedMediaSource,
+        defaultPosition = defaultPosition,
+    )
+
+    private suspend fun resolveQueueItem(itemId: UUID): Result<JellyfinMediaSource> {
+        val startTime = getSkipAwareStartTime(itemId, startTime = null)
+        return when {
+            playFromDownloads -> resolveDownloadMediaSource(itemId, startTime)
+            else -> mediaSourceResolver.resolveMediaSource(
+                itemId = itemId,
+                deviceProfile = deviceProfile,
+                maxStreamingBitrate = maxStreamingBitrate,
+                startTime = startTime,
+            )
+        }
+    }
+
+    /**
+     * Move the [startTime] of [itemId] past the segment it falls into, if that segment is skipped automatically anyway.
+     * Also passes the automatically skipped segments on to the player, so that it doesn't buffer them.
+     *
+     * @return the adjusted start time, or the unchanged [startTime] if it's not within such a segment.
+     */
+    private suspend fun getSkipAwareStartTime(itemId: UUID, startTime: Duration?): Duration? {
+        val segments = mediaSegmentRepository.getAutoSkipSegments(itemId).sortedBy { segment -> segment.start }
+        viewModel.setAutoSkipSegments(itemId, segments)
+
+        var position = startTime ?: Duration.ZERO
+        for (segment in segments) {
+            if (position >= segment.start && position < segment.end) position = segment.end
+        }
+        return if (position != (startTime ?: Duration.ZERO)) position else startTime
+    }
+
+    private fun onQueueItemResolved(queueItem: QueueItemMediaSource) {
+        // The player already moved on to the item while it was resolving
+        if (queueItems.getOrNull(currentQueueIndex) === queueItem) {
+            queueItem.jellyfinMediaSource?.let(::startQueueItem)
+        }
+    }
+
+    /**
+     * Update the current item after the player transitioned to the item at [index] of its playlist.
+     */
+    fun onMediaItemTransition(index: Int) {
+        if (index == currentQueueIndex) return
+
+        val departedIndex = currentQueueIndex
+        currentQueueIndex = index
+        invalidateQueueItem(departedIndex)
+        resetPlaybackFallback()
+        prefetchMediaSegments(index + 1)
+
+        // Otherwise started once resolved
+        queueItems.getOrNull(index)?.jellyfinMediaSource?.let(::startQueueItem)
+    }
+
+    /**
+     * Prefetch the media segments of the item at [index] of the queue and the one after it,
+     * so that skip actions are available as soon as they start playing.
+     *
+     * Downloaded items use the segments stored with the download, those are only refreshed if the server is reachable.
+     */
+    private fun prefetchMediaSegments(index: Int) {
+        mediaSegmentRepository.prefetchSegments(currentQueue.drop(index).take(2))
+    }
+
+    /**
+     * Replace the item at [index] with one that resolves again, once the player left it.
+     * The player already reported the play session of its media source as stopped, so it can't be played again.
+     */
+    private fun invalidateQueueItem(index: Int) {
+        val queueItem = queueItems.getOrNull(index) ?: return
+        if (queueItem.jellyfinMediaSource == null) return
+
+        val newQueueItem = createQueueItem(queueItem.itemId)
+        queueItems = queueItems.toMutableList().apply { set(index, newQueueItem) }
+        viewModel.replaceQueueItem(index, newQueueItem)
+        queueItem.discard()
+    }
+
+    private fun startQueueItem(mediaSource: JellyfinMediaSource) {
+        _currentMediaSource.value = mediaSource
+        viewModel.onMediaSourceStarted(mediaSource)
+    }
+
+    /**
+     * Start resolving the next item, so that ExoPlayer can start buffering it right away once it gets there.
+     */
+    fun preloadNext() {
+        queueItems.getOrNull(currentQueueIndex + 1)?.resolveAhead()
+    }
+
+    /**
+     * Drop all queue items, cleaning up the play sessions of resolved items that never became current.
+     */
+    fun release() {
+        val currentMediaSource = getCurrentMediaSourceOrNull()
+        val items = queueItems
+        queueItems = emptyList()
+        discardQueueItems(items, keep = currentMediaSource)
+    }
+
+    /**
+     * Discard [items], cleaning up the play sessions of their resolved media sources except for [keep].
+     */
+    private fun discardQueueItems(items: List<QueueItemMediaSource>, keep: JellyfinMediaSource? = null) {
+        val mediaSources = items.mapNotNull(QueueItemMediaSource::discard).filter { source -> source !== keep }
+        if (mediaSources.isEmpty()) return
+
+        // Cleanup has to outlive the player, e.g. when releasing while stopping
+        CoroutineScope(Dispatchers.Main).launch {
+            mediaSources.forEach { mediaSource -> releaseMediaSource(mediaSource) }
         }
     }
 
@@ -243,64 +431,112 @@ class QueueManager(
     }
 
     /**
-     * Change the maximum bitrate to the specified value.
+     * Change the maximum bitrate to the specified value, for the current item and all following ones.
      */
     suspend fun changeBitrate(bitrate: Int?): Boolean {
         val currentMediaSource = getCurrentMediaSourceOrNull() as? RemoteJellyfinMediaSource ?: return false
 
         // Bitrate didn't change, ignore
-        if (currentMediaSource.maxStreamingBitrate == bitrate) return true
+        if (currentMediaSource.maxStreamingBitrate == bitrate && maxStreamingBitrate == bitrate) return true
 
-        val currentPlayState = viewModel.getStateAndPause() ?: return false
+        return adaptBitrate(bitrate).also { isScheduled ->
+            if (isScheduled) maxStreamingBitrate = bitrate
+        }
+    }
 
-        return startRemotePlayback(
-            itemId = currentMediaSource.itemId,
-            mediaSourceId = currentMediaSource.id,
+    /**
+     * Change the maximum bitrate of the current item only, e.g. to adapt a transcode to the connection.
+     * Following items still use the bitrate chosen through [changeBitrate].
+     */
+    suspend fun adaptBitrate(bitrate: Int?): Boolean {
+        val currentMediaSource = getCurrentMediaSourceOrNull() as? RemoteJellyfinMediaSource ?: return false
+
+        // Bitrate didn't change, ignore
+        if (currentMediaSource.maxStreamingBitrate == bitrate) return true
+
+        return switchRemotePlayback(
+            currentMediaSource = currentMediaSource,
             maxStreamingBitrate = bitrate,
-            startTime = currentPlayState.position,
             audioStreamIndex = currentMediaSource.selectedAudioStreamIndex,
             subtitleStreamIndex = currentMediaSource.selectedSubtitleStreamIndex,
-            playWhenReady = currentPlayState.playWhenReady,
-        ) == null
+        )
+    }
+
+    /**
+     * Switch the current item over to a new play session with different settings, while the current one keeps playing.
+     *
+     * The previous play session is only stopped once the player switched over, see [PlayerViewModel.handOffQueueItem].
+     *
+     * @return true if the switch was scheduled.
+     */
+    private suspend fun switchRemotePlayback(
+        currentMediaSource: RemoteJellyfinMediaSource,
+        maxStreamingBitrate: Int?,
+        audioStreamIndex: Int?,
+        subtitleStreamIndex: Int?,
+    ): Boolean {
+        val handoffPosition = viewModel.getHandoffPosition() ?: return false
+
+        mediaSourceResolver.resolveMediaSource(
+            itemId = currentMediaSource.itemId,
+            mediaSourceId = currentMediaSource.id,
+            deviceProfile = deviceProfile,
+            maxStreamingBitrate = maxStreamingBitrate,
+            startTime = handoffPosition,
+            audioStreamIndex = audioStreamIndex,
+            subtitleStreamIndex = subtitleStreamIndex,
+        ).onSuccess { jellyfinMediaSource ->
+            val index = currentQueueIndex
+            val queueItem = createQueueItem(
+                itemId = jellyfinMediaSource.itemId,
+                resolvedMediaSource = jellyfinMediaSource,
+                defaultPosition = handoffPosition,
+            )
+            val isScheduled = viewModel.handOffQueueItem(index, queueItem, handoffPosition) { completed ->
+                if (completed) onHandoffCompleted(index, queueItem) else discardQueueItems(listOf(queueItem))
+            }
+            if (!isScheduled) {
+                // The player moved on in the meantime
+                discardQueueItems(listOf(queueItem))
+            }
+            return isScheduled
+        }
+        return false
+    }
+
+    private fun onHandoffCompleted(index: Int, queueItem: QueueItemMediaSource) {
+        val previousQueueItem = queueItems.getOrNull(index)
+        queueItems = queueItems.toMutableList().apply { set(index, queueItem) }
+        queueItem.jellyfinMediaSource?.let(::startQueueItem)
+
+        // The player already reported the previous play session as stopped, which also stops its transcode
+        previousQueueItem?.let { item -> discardQueueItems(listOf(item), keep = item.jellyfinMediaSource) }
     }
 
     fun hasPrevious(): Boolean = currentQueue.isNotEmpty() && currentQueueIndex > 0
 
     fun hasNext(): Boolean = currentQueue.isNotEmpty() && currentQueueIndex < currentQueue.lastIndex
 
-    suspend fun previous(): Boolean {
+    fun previous(): Boolean {
         if (!hasPrevious()) return false
 
-        val currentMediaSource = getCurrentMediaSourceOrNull() as? RemoteJellyfinMediaSource ?: return false
-
-        resetPlaybackFallback()
-
-        startRemotePlayback(
-            itemId = currentQueue[--currentQueueIndex],
-            mediaSourceId = null,
-            maxStreamingBitrate = currentMediaSource.maxStreamingBitrate,
-        )
-        return true
+        // Items are resolved again once the player left them, see invalidateQueueItem
+        return viewModel.seekToQueueItem(currentQueueIndex - 1)
     }
 
-    suspend fun next(): Boolean {
+    fun next(): Boolean {
         if (!hasNext()) return false
 
-        resetPlaybackFallback()
+        return viewModel.seekToQueueItem(currentQueueIndex + 1)
+    }
 
-        when (val currentMediaSource = getCurrentMediaSourceOrNull()) {
-            is LocalJellyfinMediaSource -> startDownloadPlayback(
-                itemId = currentQueue[++currentQueueIndex],
-                playWhenReady = true,
-            )
-            is RemoteJellyfinMediaSource -> startRemotePlayback(
-                itemId = currentQueue[++currentQueueIndex],
-                mediaSourceId = null,
-                maxStreamingBitrate = currentMediaSource.maxStreamingBitrate,
-            )
-            null -> return false
+    private suspend fun releaseMediaSource(mediaSource: JellyfinMediaSource) {
+        if (mediaSource !is RemoteJellyfinMediaSource) return
+        try {
+            viewModel.stopTranscoding(mediaSource)
+        } catch (e: ApiClientException) {
+            Timber.e(e, "Failed to stop transcoding of discarded queue item")
         }
-        return true
     }
 
     /**
@@ -310,6 +546,12 @@ class QueueManager(
      * @return A [MediaSource]. This can be the media stream of the correct type for the playback method or
      * a [MergingMediaSource] containing the mentioned media stream and all external subtitle streams.
      */
+    @CheckResult
+    private fun prepareStreams(source: JellyfinMediaSource): MediaSource = when (source) {
+        is LocalJellyfinMediaSource -> prepareStreams(source)
+        is RemoteJellyfinMediaSource -> prepareStreams(source)
+    }
+
     @CheckResult
     private fun prepareStreams(source: LocalJellyfinMediaSource): MediaSource {
         return createDownloadVideoMediaSource(source.id, source.remoteFileUri)
@@ -376,8 +618,17 @@ class QueueManager(
             }
         }
 
+        // Progressive direct play and direct stream are written through to the streaming cache,
+        // while transcodes and live streams can't be reused and bypass it
+        val isCacheable = source.playMethod != PlayMethod.TRANSCODE &&
+            forcedMimeType == null &&
+            !sourceInfo.isInfiniteStream
+
         // DefaultMediaSourceFactory
-        val factory = get<MediaSource.Factory>()
+        val factory = when {
+            isCacheable -> get<MediaSource.Factory>(named(STREAMING_MEDIA_SOURCE_FACTORY))
+            else -> get<MediaSource.Factory>()
+        }
 
         val mediaItem = MediaItem.Builder()
             .setMediaId(source.itemId.toString())
@@ -430,25 +681,24 @@ class QueueManager(
      */
     suspend fun selectAudioStreamAndRestartPlayback(stream: MediaStream): Boolean {
         require(stream.type == MediaStreamType.AUDIO)
-        val currentPlayState = viewModel.getStateAndPause() ?: return false
         resetPlaybackFallback()
 
         when (val currentMediaSource = getCurrentMediaSourceOrNull()) {
-            is LocalJellyfinMediaSource -> startDownloadPlayback(
-                itemId = currentMediaSource.itemId,
-                startTime = currentPlayState.position,
-                audioStreamIndex = stream.index,
-                subtitleStreamIndex = currentMediaSource.selectedSubtitleStreamIndex,
-                playWhenReady = currentPlayState.playWhenReady,
-            )
-            is RemoteJellyfinMediaSource -> startRemotePlayback(
-                itemId = currentMediaSource.itemId,
-                mediaSourceId = currentMediaSource.id,
+            is LocalJellyfinMediaSource -> {
+                val currentPlayState = viewModel.getStateAndPause() ?: return false
+                startDownloadPlayback(
+                    itemId = currentMediaSource.itemId,
+                    startTime = currentPlayState.position,
+                    audioStreamIndex = stream.index,
+                    subtitleStreamIndex = currentMediaSource.selectedSubtitleStreamIndex,
+                    playWhenReady = currentPlayState.playWhenReady,
+                )
+            }
+            is RemoteJellyfinMediaSource -> return switchRemotePlayback(
+                currentMediaSource = currentMediaSource,
                 maxStreamingBitrate = currentMediaSource.maxStreamingBitrate,
-                startTime = currentPlayState.position,
                 audioStreamIndex = stream.index,
                 subtitleStreamIndex = currentMediaSource.selectedSubtitleStreamIndex,
-                playWhenReady = currentPlayState.playWhenReady,
             )
             null -> return false
         }
@@ -464,25 +714,24 @@ class QueueManager(
      */
     suspend fun selectSubtitleStreamAndRestartPlayback(stream: MediaStream?): Boolean {
         require(stream == null || stream.type == MediaStreamType.SUBTITLE)
-        val currentPlayState = viewModel.getStateAndPause() ?: return false
         resetPlaybackFallback()
 
         when (val mediaSource = getCurrentMediaSourceOrNull()) {
-            is LocalJellyfinMediaSource -> startDownloadPlayback(
-                itemId = mediaSource.itemId,
-                startTime = currentPlayState.position,
-                audioStreamIndex = mediaSource.selectedAudioStreamIndex,
-                subtitleStreamIndex = stream?.index ?: -1, // -1 disables subtitles, null would select the default subtitle
-                playWhenReady = currentPlayState.playWhenReady,
-            )
-            is RemoteJellyfinMediaSource -> startRemotePlayback(
-                itemId = mediaSource.itemId,
-                mediaSourceId = mediaSource.id,
+            is LocalJellyfinMediaSource -> {
+                val currentPlayState = viewModel.getStateAndPause() ?: return false
+                startDownloadPlayback(
+                    itemId = mediaSource.itemId,
+                    startTime = currentPlayState.position,
+                    audioStreamIndex = mediaSource.selectedAudioStreamIndex,
+                    subtitleStreamIndex = stream?.index ?: -1, // -1 disables subtitles, null would select the default subtitle
+                    playWhenReady = currentPlayState.playWhenReady,
+                )
+            }
+            is RemoteJellyfinMediaSource -> return switchRemotePlayback(
+                currentMediaSource = mediaSource,
                 maxStreamingBitrate = mediaSource.maxStreamingBitrate,
-                startTime = currentPlayState.position,
                 audioStreamIndex = mediaSource.selectedAudioStreamIndex,
                 subtitleStreamIndex = stream?.index ?: -1, // -1 disables subtitles, null would select the default subtitle
-                playWhenReady = currentPlayState.playWhenReady,
             )
             null -> return false
         }
@@ -1,14 +1,17 @@
 package org.jellyfin.mobile.player.source
 
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.withContext
+import org.jellyfin.mobile.library.LibraryRepository
 import org.jellyfin.mobile.player.PlayerException
 import org.jellyfin.sdk.api.client.ApiClient
 import org.jellyfin.sdk.api.client.exception.ApiClientException
 import org.jellyfin.sdk.api.client.extensions.mediaInfoApi
-import org.jellyfin.sdk.api.client.extensions.userLibraryApi
 import org.jellyfin.sdk.api.operations.MediaInfoApi
-import org.jellyfin.sdk.api.operations.UserLibraryApi
+import org.jellyfin.sdk.model.api.BaseItemDto
 import org.jellyfin.sdk.model.api.DeviceProfile
 import org.jellyfin.sdk.model.api.MediaSourceInfo
 import org.jellyfin.sdk.model.api.PlaybackInfoDto
@@ -16,11 +19,20 @@ import org.jellyfin.sdk.model.extensions.inWholeTicks
 import org.jellyfin.sdk.model.serializer.toUUIDOrNull
 import timber.log.Timber
 import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.time.Duration
+import kotlin.time.Duration.Companion.minutes
 
-class MediaSourceResolver(private val apiClient: ApiClient) {
+class MediaSourceResolver(
+    private val apiClient: ApiClient,
+    private val libraryRepository: LibraryRepository,
+) {
     private val mediaInfoApi: MediaInfoApi = apiClient.mediaInfoApi
-    private val userLibraryApi: UserLibraryApi = apiClient.userLibraryApi
+
+    /**
+     * Recent PlaybackInfo results, so that re-entering the player or retrying playback doesn't need another round trip.
+     */
+    private val playbackInfoCache = ConcurrentHashMap<PlaybackInfoKey, CachedPlaybackInfo>()
 
     @Suppress("ReturnCount")
     suspend fun resolveMediaSource(
@@ -34,10 +46,22 @@ class MediaSourceResolver(private val apiClient: ApiClient) {
         autoOpenLiveStream: Boolean = true,
         enableDirectPlay: Boolean? = null,
         enableDirectStream: Boolean? = null,
-    ): Result<RemoteJellyfinMediaSource> {
+    ): Result<RemoteJellyfinMediaSource> = coroutineScope {
+        // Load additional item info if possible, preferring the cached copy
+        val item = async { libraryRepository.getItem(itemId) }
+
         // Load media source info
-        val playSessionId: String
-        val mediaSourceInfo: MediaSourceInfo = try {
+        val key = PlaybackInfoKey(
+            itemId = itemId,
+            mediaSourceId = mediaSourceId,
+            deviceProfileHash = deviceProfile.hashCode(),
+            maxStreamingBitrate = maxStreamingBitrate,
+            audioStreamIndex = audioStreamIndex,
+            subtitleStreamIndex = subtitleStreamIndex,
+            enableDirectPlay = enableDirectPlay,
+            enableDirectStream = enableDirectStream,
+        )
+        val playbackInfo = getCachedPlaybackInfo(key, startTime) ?: try {
             val response = withContext(Dispatchers.IO) {
                 mediaInfoApi.getPostedPlaybackInfo(
                     itemId = itemId,
@@ -58,35 +82,29 @@ class MediaSourceResolver(private val apiClient: ApiClient) {
                 ).content
             }
 
-            playSessionId = response.playSessionId ?: return Result.failure(PlayerException.UnsupportedContent())
+            val playSessionId = response.playSessionId ?: return@coroutineScope unsupported(item)
 
-            response.mediaSources.let { sources ->
+            val mediaSourceInfo = response.mediaSources.let { sources ->
                 sources.find { source -> source.id?.toUUIDOrNull() == itemId } ?: sources.firstOrNull()
-            } ?: return Result.failure(PlayerException.UnsupportedContent())
-        } catch (e: ApiClientException) {
-            Timber.e(e, "Failed to load media source $itemId")
-            return Result.failure(PlayerException.NetworkFailure(e))
-        }
-
-        // Load additional item info if possible
+            } ?: return@coroutineScope unsupported(item)
 
-        val item = try {
-            withContext(Dispatchers.IO) {
-                userLibraryApi.getItem(itemId).content
+            CachedPlaybackInfo(playSessionId, mediaSourceInfo, startTime).also { playbackInfo ->
+                putCachedPlaybackInfo(key, playbackInfo)
             }
         } catch (e: ApiClientException) {
-            Timber.e(e, "Failed to load item for media source $itemId")
-            null
+            Timber.e(e, "Failed to load media source $itemId")
+            item.cancel()
+            return@coroutineScope Result.failure(PlayerException.NetworkFailure(e))
         }
 
         // Create JellyfinMediaSource
-        return try {
+        try {
             val source = RemoteJellyfinMediaSource(
                 itemId = itemId,
-                item = item,
-                sourceInfo = mediaSourceInfo,
-                playSessionId = playSessionId,
-                liveStreamId = mediaSourceInfo.liveStreamId,
+                item = item.await(),
+                sourceInfo = playbackInfo.mediaSourceInfo,
+                playSessionId = playbackInfo.playSessionId,
+                liveStreamId = playbackInfo.mediaSourceInfo.liveStreamId,
                 maxStreamingBitrate = maxStreamingBitrate,
                 playbackDetails = PlaybackDetails(startTime, audioStreamIndex, subtitleStreamIndex),
             )
@@ -96,4 +114,56 @@ class MediaSourceResolver(private val apiClient: ApiClient) {
             Result.failure(PlayerException.UnsupportedContent(e))
         }
     }
+
+    private fun unsupported(item: Deferred<BaseItemDto?>): Result<RemoteJellyfinMediaSource> {
+        item.cancel()
+        return Result.failure(PlayerException.UnsupportedContent())
+    }
+
+    private fun getCachedPlaybackInfo(key: PlaybackInfoKey, startTime: Duration?): CachedPlaybackInfo? {
+        val playbackInfo = playbackInfoCache[key] ?: return null
+        return when {
+            playbackInfo.isExpired -> {
+                playbackInfoCache.remove(key, playbackInfo)
+                null
+            }
+            // The transcoding job is started at the requested position
+            playbackInfo.mediaSourceInfo.transcodingUrl != null && playbackInfo.startTime != startTime -> null
+            else -> playbackInfo
+        }
+    }
+
+    private fun putCachedPlaybackInfo(key: PlaybackInfoKey, playbackInfo: CachedPlaybackInfo) {
+        // Live streams are opened by the request and can't be shared
+        if (playbackInfo.mediaSourceInfo.liveStreamId != null) return
+
+        playbackInfoCache.values.removeIf(CachedPlaybackInfo::isExpired)
+        playbackInfoCache[key] = playbackInfo
+    }
+
+    private data class PlaybackInfoKey(
+        val itemId: UUID,
+        val mediaSourceId: String?,
+        val deviceProfileHash: Int,
+        val maxStreamingBitrate: Int?,
+        val audioStreamIndex: Int?,
+        val subtitleStreamIndex: Int?,
+        val enableDirectPlay: Boolean?,
+        val enableDirectStream: Boolean?,
+    )
+
+    private class CachedPlaybackInfo(
+        val playSessionId: String,
+        val mediaSourceInfo: MediaSourceInfo,
+        val startTime: Duration?,
+    ) {
+        private val cachedAt = System.currentTimeMillis()
+
+        val isExpired: Boolean
+            get() = System.currentTimeMillis() - cachedAt > PLAYBACK_INFO_TTL.inWholeMilliseconds
+    }
+
+    companion object {
+        private val PLAYBACK_INFO_TTL = 2.minutes
+    }
 }
@@ -0,0 +1,36 @@
+package org.jellyfin.mobile.player.startup
+
+/**
+ * Phases between the request to play an item and its first frame, in the order they're usually reached.
+ */
+enum class StartupPhase {
+    /**
+     * The media source was resolved, including the PlaybackInfo request to the server.
+     */
+    RESOLVE,
+
+    /**
+     * The media source was handed to the player and preparation started.
+     */
+    PREPARE,
+
+    /**
+     * The first bytes of media arrived, which includes the time the server needs to start a transcode.
+     */
+    FIRST_BYTE,
+
+    /**
+     * The player selected the initial tracks.
+     */
+    TRACKS_SELECTED,
+
+    /**
+     * The player is ready to play at the start position.
+     */
+    SEEK_COMPLETE,
+
+    /**
+     * The first video frame was rendered.
+     */
+    FIRST_FRAME,
+}
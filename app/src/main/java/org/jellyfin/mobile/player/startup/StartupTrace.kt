@@ -0,0 +1,30 @@
+package org.jellyfin.mobile.player.startup
+
+import kotlinx.serialization.Serializable
+import org.jellyfin.sdk.model.api.PlayMethod
+import org.jellyfin.sdk.model.serializer.UUIDSerializer
+import java.util.UUID
+
+/**
+ * Timings of the startup of a single playback session.
+ *
+ * @param timestamp the wall clock time playback was requested at, in milliseconds since the epoch.
+ * @param playMethod the play method of the resolved media source, or null if resolving didn't finish.
+ * @param phases the time each reached phase took from the request, in milliseconds.
+ * @param isComplete whether the first frame was rendered at the start position, otherwise playback was stopped or failed during startup.
+ */
+@Serializable
+data class StartupTrace(
+    @Serializable(with = UUIDSerializer::class)
+    val itemId: UUID,
+    val timestamp: Long,
+    val playMethod: PlayMethod?,
+    val phases: Map<StartupPhase, Long>,
+    val isComplete: Boolean,
+) {
+    /**
+     * The time from the request to the first frame in milliseconds, or null if it wasn't reached.
+     */
+    val timeToFirstFrame: Long?
+        get() = phases[StartupPhase.FIRST_FRAME]
+}
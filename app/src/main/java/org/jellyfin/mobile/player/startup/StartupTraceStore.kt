@@ -0,0 +1,54 @@
+package org.jellyfin.mobile.player.startup
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.core.content.edit
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.serialization.SerializationException
+import kotlinx.serialization.json.Json
+import timber.log.Timber
+
+/**
+ * Keeps the most recent [StartupTrace]s on the device, older traces are dropped once [MAX_TRACES] is reached.
+ */
+class StartupTraceStore(context: Context) {
+    private val sharedPreferences: SharedPreferences =
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+
+    private val _traces = MutableStateFlow(loadTraces())
+
+    /**
+     * The stored traces, oldest first.
+     */
+    val traces: StateFlow<List<StartupTrace>>
+        get() = _traces.asStateFlow()
+
+    fun add(trace: StartupTrace) {
+        val traces = (_traces.value + trace).takeLast(MAX_TRACES)
+        _traces.value = traces
+        sharedPreferences.edit { putString(KEY_TRACES, Json.encodeToString(traces)) }
+    }
+
+    fun clear() {
+        _traces.value = emptyList()
+        sharedPreferences.edit { remove(KEY_TRACES) }
+    }
+
+    private fun loadTraces(): List<StartupTrace> {
+        val json = sharedPreferences.getString(KEY_TRACES, null) ?: return emptyList()
+        return try {
+            Json.decodeFromString(json)
+        } catch (e: SerializationException) {
+            Timber.e(e, "Failed to load startup traces")
+            emptyList()
+        }
+    }
+
+    companion object {
+        private const val PREFERENCES_NAME = "startup_traces"
+        private const val KEY_TRACES = "traces"
+        private const val MAX_TRACES = 50
+    }
+}
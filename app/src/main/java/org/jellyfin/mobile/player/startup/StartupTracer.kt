@@ -0,0 +1,162 @@
+package org.jellyfin.mobile.player.startup
+
+import android.os.SystemClock
+import androidx.media3.common.C
+import androidx.media3.common.Player
+import androidx.media3.common.Tracks
+import androidx.media3.datasource.DataSource
+import androidx.media3.datasource.DataSpec
+import androidx.media3.datasource.TransferListener
+import androidx.media3.exoplayer.analytics.AnalyticsListener
+import androidx.media3.exoplayer.upstream.BandwidthMeter
+import org.jellyfin.mobile.player.source.JellyfinMediaSource
+import org.jellyfin.sdk.model.api.PlayMethod
+import timber.log.Timber
+import java.util.UUID
+
+/**
+ * Measures where the time between the request to play an item and its first frame goes.
+ *
+ * A trace is started by [begin] and timestamps every [StartupPhase] reached afterwards. Once the first frame is
+ * rendered, or playback is stopped before that, the trace is handed to the [StartupTraceStore].
+ */
+class StartupTracer(
+    private val startupTraceStore: StartupTraceStore,
+) : AnalyticsListener {
+    private var itemId: UUID? = null
+    private var timestamp = 0L
+    private var startMs = C.TIME_UNSET
+    private var playMethod: PlayMethod? = null
+    private val phases = LinkedHashMap<StartupPhase, Long>()
+
+    /**
+     * Set from the loading threads, only the first transfer after preparation is of interest.
+     */
+    @Volatile
+    private var firstByteMs = C.TIME_UNSET
+
+    @Volatile
+    private var isAwaitingFirstByte = false
+
+    private val isTracing: Boolean
+        get() = startMs != C.TIME_UNSET
+
+    /**
+     * Player events are only attributed to the trace once its media was handed to the player.
+     */
+    private val isPrepared: Boolean
+        get() = isTracing && phases.containsKey(StartupPhase.PREPARE)
+
+    /**
+     * Start a new trace for playback of [itemId], a trace still in progress is stored as incomplete.
+     */
+    fun begin(itemId: UUID) {
+        cancel()
+        this.itemId = itemId
+        timestamp = System.currentTimeMillis()
+        startMs = SystemClock.elapsedRealtime()
+    }
+
+    /**
+     * Store the current trace as incomplete, e.g. because playback was stopped or failed.
+     */
+    fun cancel() {
+        if (isTracing) finish(isComplete = false)
+    }
+
+    fun onMediaSourceResolved(mediaSource: JellyfinMediaSource) {
+        if (!isTracing) return
+        playMethod = mediaSource.playMethod
+        mark(StartupPhase.RESOLVE, SystemClock.elapsedRealtime())
+    }
+
+    fun onPrepare() {
+        // Restarts after a decoder failure continue the trace
+        if (!isTracing || phases.containsKey(StartupPhase.PREPARE)) return
+        mark(StartupPhase.PREPARE, SystemClock.elapsedRealtime())
+        firstByteMs = C.TIME_UNSET
+        isAwaitingFirstByte = true
+    }
+
+    /**
+     * Wrap the [bandwidthMeter] of the player, so that media transfers are observed as well.
+     */
+    fun wrapBandwidthMeter(bandwidthMeter: BandwidthMeter): BandwidthMeter = object : BandwidthMeter by bandwidthMeter {
+        override fun getTransferListener(): TransferListener = FirstByteTransferListener(bandwidthMeter.transferListener)
+    }
+
+    override fun onTracksChanged(eventTime: AnalyticsListener.EventTime, tracks: Tracks) {
+        if (!isPrepared || tracks.isEmpty) return
+        mark(StartupPhase.TRACKS_SELECTED, eventTime.realtimeMs)
+    }
+
+    override fun onPlaybackStateChanged(eventTime: AnalyticsListener.EventTime, state: Int) {
+        if (!isPrepared || state != Player.STATE_READY) return
+        mark(StartupPhase.SEEK_COMPLETE, eventTime.realtimeMs)
+        finishIfComplete()
+    }
+
+    override fun onRenderedFirstFrame(eventTime: AnalyticsListener.EventTime, output: Any, renderTimeMs: Long) {
+        if (!isPrepared) return
+        mark(StartupPhase.FIRST_FRAME, eventTime.realtimeMs)
+        finishIfComplete()
+    }
+
+    private fun mark(phase: StartupPhase, realtimeMs: Long) {
+        if (phases.containsKey(phase)) return
+        phases[phase] = (realtimeMs - startMs).coerceAtLeast(0)
+    }
+
+    /**
+     * The first frame may be rendered before the player is ready, the trace is complete once both happened.
+     */
+    private fun finishIfComplete() {
+        if (phases.containsKey(StartupPhase.SEEK_COMPLETE) && phases.containsKey(StartupPhase.FIRST_FRAME)) {
+            finish(isComplete = true)
+        }
+    }
+
+    private fun finish(isComplete: Boolean) {
+        firstByteMs.takeIf { ms -> ms != C.TIME_UNSET }?.let { ms -> mark(StartupPhase.FIRST_BYTE, ms) }
+        isAwaitingFirstByte = false
+
+        val trace = StartupTrace(
+            itemId = itemId ?: return,
+            timestamp = timestamp,
+            playMethod = playMethod,
+            phases = phases.entries.sortedBy { (_, ms) -> ms }.associate { (phase, ms) -> phase to ms },
+            isComplete = isComplete,
+        )
+        Timber.i("Playback startup of %s (%s): %s", trace.itemId, trace.playMethod, trace.phases)
+        startupTraceStore.add(trace)
+
+        itemId = null
+        startMs = C.TIME_UNSET
+        playMethod = null
+        phases.clear()
+    }
+
+    private inner class FirstByteTransferListener(
+        private val delegate: TransferListener?,
+    ) : TransferListener {
+        override fun onTransferInitializing(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+            delegate?.onTransferInitializing(source, dataSpec, isNetwork)
+        }
+
+        override fun onTransferStart(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+            delegate?.onTransferStart(source, dataSpec, isNetwork)
+        }
+
+        override fun onBytesTransferred(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean, bytesTransferred: Int) {
+            if (isAwaitingFirstByte && bytesTransferred > 0) {
+                isAwaitingFirstByte = false
+                firstByteMs = SystemClock.elapsedRealtime()
+            }
+            delegate?.onBytesTransferred(source, dataSpec, isNetwork, bytesTransferred)
+        }
+
+        override fun onTransferEnd(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+            delegate?.onTransferEnd(source, dataSpec, isNetwork)
+        }
+    }
+}
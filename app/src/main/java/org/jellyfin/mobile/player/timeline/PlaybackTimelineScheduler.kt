@@ -0,0 +1,83 @@
+package org.jellyfin.mobile.player.timeline
+
+import androidx.media3.common.Player
+import androidx.media3.exoplayer.ExoPlayer
+import androidx.media3.exoplayer.PlayerMessage
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+
+/**
+ * Runs work at positions on the timeline of the current item instead of polling the playback position.
+ *
+ * Actions are scheduled as [PlayerMessage]s, which ExoPlayer delivers when playback reaches their position.
+ * Nothing is delivered while paused or buffering, and seeking only triggers the actions that are passed afterwards.
+ * Messages are bound to the item that is current when they're scheduled, so they never fire during another item.
+ * All actions are run on the main thread.
+ */
+class PlaybackTimelineScheduler(
+    private val player: ExoPlayer,
+    private val scope: CoroutineScope,
+) : Player.Listener {
+    private val boundaryMessages = mutableListOf<PlayerMessage>()
+    private var heartbeat: Heartbeat? = null
+
+    /**
+     * Run [action] every time playback of the current item passes [positionMs], e.g. again after seeking back.
+     */
+    fun addBoundary(positionMs: Long, action: () -> Unit) {
+        boundaryMessages += player
+            .createMessage { _, _ ->
+                scope.launch(Dispatchers.Main) { action() }
+            }
+            // Messages at position 0 will never be hit by ExoPlayer so we need to add a minimum value
+            .setPosition(player.currentMediaItemIndex, positionMs.coerceAtLeast(1))
+            .setDeleteAfterDelivery(false)
+            .send()
+    }
+
+    /**
+     * Run [action] after every [intervalMs] of playback of the current item, counted from the last seek.
+     */
+    fun setHeartbeat(intervalMs: Long, action: () -> Unit) {
+        heartbeat?.message?.cancel()
+        heartbeat = Heartbeat(intervalMs, action).also(::scheduleHeartbeat)
+    }
+
+    /**
+     * Remove all boundaries and the heartbeat, e.g. because a different item started playing.
+     */
+    fun clear() {
+        boundaryMessages.forEach(PlayerMessage::cancel)
+        boundaryMessages.clear()
+        heartbeat?.message?.cancel()
+        heartbeat = null
+    }
+
+    override fun onPositionDiscontinuity(oldPosition: Player.PositionInfo, newPosition: Player.PositionInfo, reason: Int) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+            heartbeat?.let(::scheduleHeartbeat)
+        }
+    }
+
+    private fun scheduleHeartbeat(heartbeat: Heartbeat) {
+        heartbeat.message?.cancel()
+        heartbeat.message = player
+            .createMessage { _, _ ->
+                scope.launch(Dispatchers.Main) {
+                    if (this@PlaybackTimelineScheduler.heartbeat !== heartbeat) return@launch
+                    heartbeat.action()
+                    scheduleHeartbeat(heartbeat)
+                }
+            }
+            .setPosition(player.currentMediaItemIndex, player.currentPosition + heartbeat.intervalMs)
+            .send()
+    }
+
+    private class Heartbeat(
+        val intervalMs: Long,
+        val action: () -> Unit,
+    ) {
+        var message: PlayerMessage? = null
+    }
+}
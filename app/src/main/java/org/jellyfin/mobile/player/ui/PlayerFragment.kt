@@ -294,7 +294,11 @@ class PlayerFragment : Fragment(), BackPressInterceptor {
 
     fun onFastForward() = viewModel.fastForward()
 
-    fun onSeekByOffset(offsetMs: Long) = viewModel.seekByOffset(offsetMs)
+    fun onScrubMove(positionMs: Long) = viewModel.scrubTo(positionMs)
+
+    fun onScrubStop(positionMs: Long?) = viewModel.stopScrubbing(positionMs)
+
+    fun onScrubRelease() = viewModel.cancelScrubbing()
 
     fun onPreviousChapter() = viewModel.previousChapter()
 
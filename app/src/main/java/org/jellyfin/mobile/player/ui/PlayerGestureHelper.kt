@@ -271,6 +271,8 @@ class PlayerGestureHelper(
                     // Update position text (current position / duration)
                     val targetPosition = (seekStartPosition + seekTimeAccumulator).coerceIn(0, mediaDuration)
                     seekPositionText.text = "${formatTime(targetPosition)} / ${formatTime(mediaDuration)}"
+                    // The accumulator is already clamped, this also works if the duration is unknown
+                    fragment.onScrubMove(seekStartPosition + seekTimeAccumulator)
 
                     // Update progress bar
                     if (mediaDuration > 0) {
@@ -290,6 +292,7 @@ class PlayerGestureHelper(
                     return true
                 } else if (currentGesture == GestureDirection.HORIZONTAL && !appPreferences.exoPlayerAllowHorizontalGesture) {
                     // If horizontal gesture is disabled while a gesture was in progress, reset the state
+                    if (isHorizontalSeeking) fragment.onScrubStop(null)
                     currentGesture = GestureDirection.NONE
                     isHorizontalSeeking = false
                     seekTimeAccumulator = 0L
@@ -412,7 +415,7 @@ class PlayerGestureHelper(
 
                 // Handle horizontal seek gesture completion
                 if (event.action == MotionEvent.ACTION_UP && currentGesture == GestureDirection.HORIZONTAL && isHorizontalSeeking && seekTimeAccumulator != 0L) {
-                    fragment.onSeekByOffset(seekTimeAccumulator)
+                    fragment.onScrubStop(seekStartPosition + seekTimeAccumulator)
                     seekOverlayLayout.apply {
                         removeCallbacks(hideSeekOverlayAction)
                         postDelayed(
@@ -420,6 +423,8 @@ class PlayerGestureHelper(
                             Constants.DEFAULT_CENTER_OVERLAY_TIMEOUT_MS.toLong(),
                         )
                     }
+                } else if (isHorizontalSeeking) {
+                    fragment.onScrubStop(null)
                 }
                 currentGesture = GestureDirection.NONE
                 isHorizontalSeeking = false
@@ -1,7 +1,9 @@
 package org.jellyfin.mobile.player.ui
 
+import android.annotation.SuppressLint
 import android.view.Menu
 import android.view.MenuItem
+import android.view.MotionEvent
 import android.view.View
 import android.widget.Button
 import android.widget.ImageButton
@@ -88,14 +90,19 @@ class PlayerMenus(
 
     init {
         exoProgress.addListener(object : TimeBar.OnScrubListener {
-            override fun onScrubStart(timeBar: TimeBar, position: Long) = trickplayHelper.onScrubMove(position)
-            override fun onScrubMove(timeBar: TimeBar, position: Long) = trickplayHelper.onScrubMove(position)
-            override fun onScrubStop(
-                timeBar: TimeBar,
-                position: Long,
-                cancelled: Boolean,
-            ) = trickplayHelper.onScrubStop()
+            override fun onScrubStart(timeBar: TimeBar, position: Long) = onScrubMove(timeBar, position)
+            override fun onScrubMove(timeBar: TimeBar, position: Long) {
+                trickplayHelper.onScrubMove(position)
+                fragment.onScrubMove(position)
+            }
+
+            override fun onScrubStop(timeBar: TimeBar, position: Long, cancelled: Boolean) {
+                trickplayHelper.onScrubStop()
+                // The controls already seek to the final position, but don't return to the start if cancelled
+                if (cancelled) fragment.onScrubStop(null) else fragment.onScrubRelease()
+            }
         })
+        setupScrubRelease()
 
         previousButton.setOnClickListener {
             fragment.onSkipToPrevious()
@@ -153,6 +160,18 @@ class PlayerMenus(
         fragment.setPlayerMenuHelper(playerMenuHelper)
     }
 
+    /**
+     * The controls have their own scrub listener on [exoProgress], which seeks to the final position before ours runs.
+     * Leave scrub mode as soon as the touch is released, so that this seek is exact again.
+     */
+    @SuppressLint("ClickableViewAccessibility")
+    private fun setupScrubRelease() {
+        exoProgress.setOnTouchListener { _, event ->
+            if (event.actionMasked == MotionEvent.ACTION_UP) fragment.onScrubRelease()
+            false
+        }
+    }
+
     fun onQueueItemChanged(mediaSource: JellyfinMediaSource, hasNext: Boolean) {
         // previousButton is always enabled and will rewind if at the start of the queue
         nextButton.isEnabled = hasNext
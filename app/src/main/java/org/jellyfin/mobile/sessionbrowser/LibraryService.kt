@@ -7,12 +7,14 @@ import androidx.media3.session.MediaLibraryService
 import androidx.media3.session.MediaSession
 import kotlinx.coroutines.runBlocking
 import org.jellyfin.mobile.app.ApiClientController
+import org.jellyfin.mobile.library.LibraryRepository
 import org.jellyfin.sdk.api.client.ApiClient
 import org.koin.android.ext.android.inject
 
 class LibraryService : MediaLibraryService() {
     private val apiClientController: ApiClientController by inject()
     private val apiClient: ApiClient by inject()
+    private val libraryRepository: LibraryRepository by inject()
 
     private val playerAudioAttributes = AudioAttributes.Builder()
         .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
@@ -32,7 +34,7 @@ class LibraryService : MediaLibraryService() {
     }
 
     private val callback: MediaLibrarySession.Callback by lazy {
-        SessionBrowserCallback(this, apiClient)
+        SessionBrowserCallback(this, apiClient, libraryRepository)
     }
 
     override fun onGetSession(
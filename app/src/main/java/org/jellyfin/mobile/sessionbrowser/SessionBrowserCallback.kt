@@ -22,6 +22,7 @@ import kotlinx.coroutines.guava.await
 import kotlinx.coroutines.guava.future
 import kotlinx.serialization.json.Json
 import org.jellyfin.mobile.R
+import org.jellyfin.mobile.library.LibraryRepository
 import org.jellyfin.mobile.sessionbrowser.page.AlbumLibraryPage
 import org.jellyfin.mobile.sessionbrowser.page.AlbumsAlphaLibraryPage
 import org.jellyfin.mobile.sessionbrowser.page.AlbumsLibraryPage
@@ -42,7 +43,6 @@ import org.jellyfin.mobile.sessionbrowser.page.SuggestedLibraryPage
 import org.jellyfin.mobile.sessionbrowser.page.UserViewLibraryPage
 import org.jellyfin.sdk.api.client.ApiClient
 import org.jellyfin.sdk.api.client.extensions.universalAudioApi
-import org.jellyfin.sdk.api.client.extensions.userLibraryApi
 import org.jellyfin.sdk.model.api.MediaStreamProtocol
 import org.jellyfin.sdk.model.extensions.ticks
 import timber.log.Timber
@@ -51,6 +51,7 @@ import timber.log.Timber
 class SessionBrowserCallback(
     private val context: Context,
     private val api: ApiClient,
+    private val libraryRepository: LibraryRepository,
 ) : MediaLibrarySession.Callback {
     companion object {
         const val MAX_PAGE_SIZE = 250
@@ -62,7 +63,7 @@ class SessionBrowserCallback(
         UserViewLibraryPage(context),
         AlbumsLibraryPage(api),
         AlbumsAlphaLibraryPage,
-        AlbumLibraryPage(api),
+        AlbumLibraryPage(api, libraryRepository),
         AudioBooksLibraryPage(api),
         AudioBooksAlphaLibraryPage,
         ArtistsLibraryPage(api),
@@ -72,10 +73,10 @@ class SessionBrowserCallback(
         GenresLibraryPage(api),
         GenreLibraryPage(api),
         PlaylistsLibraryPage(api),
-        PlaylistLibraryPage(api),
+        PlaylistLibraryPage(api, libraryRepository),
         RecentLibraryPage(api),
         SuggestedLibraryPage(api),
-        SearchLibraryPage(context, api),
+        SearchLibraryPage(context, api, libraryRepository),
     )
 
     private val LibraryRoute.page get() = pages.firstOrNull { page -> page.route == this::class }
@@ -284,8 +285,17 @@ class SessionBrowserCallback(
         val libraryMediaId = runCatching { Json.decodeFromString<LibraryMediaId>(mediaId) }.getOrNull()
         when (libraryMediaId) {
             is LibraryMediaId.Item -> {
-                val item by api.userLibraryApi.getItem(itemId = libraryMediaId.itemId)
-                LibraryResult.ofItem(LibraryPageElement.baseItem(api, item).toMediaItem(libraryMediaId.route), null)
+                val item = libraryRepository.getItem(libraryMediaId.itemId)
+                if (item == null) {
+                    LibraryResult.ofError(
+                        SessionError(
+                            SessionError.ERROR_BAD_VALUE,
+                            context.getString(R.string.media_service_item_not_found),
+                        ),
+                    )
+                } else {
+                    LibraryResult.ofItem(LibraryPageElement.baseItem(api, item).toMediaItem(libraryMediaId.route), null)
+                }
             }
 
             is LibraryMediaId.Route -> {
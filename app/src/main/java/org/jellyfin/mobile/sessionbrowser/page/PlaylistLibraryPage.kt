@@ -1,23 +1,34 @@
 package org.jellyfin.mobile.sessionbrowser.page
 
+import org.jellyfin.mobile.library.LibraryRepository
 import org.jellyfin.mobile.sessionbrowser.LibraryPageElement
 import org.jellyfin.mobile.sessionbrowser.LibraryRoute
 import org.jellyfin.mobile.sessionbrowser.libraryPage
 import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
 import org.jellyfin.sdk.api.client.extensions.itemsApi
 import org.jellyfin.sdk.model.api.ImageType
 import org.jellyfin.sdk.model.api.ItemSortBy
+import timber.log.Timber
 
-val PlaylistLibraryPage = { api: ApiClient ->
+val PlaylistLibraryPage = { api: ApiClient, libraryRepository: LibraryRepository ->
     libraryPage<LibraryRoute.Playlist>(grid = true) { route, offset, limit ->
-        val result by api.itemsApi.getItems(
-            parentId = route.playlistId,
-            sortBy = listOf(ItemSortBy.SORT_NAME),
-            imageTypeLimit = 1,
-            enableImageTypes = listOf(ImageType.PRIMARY),
-            startIndex = offset,
-            limit = limit,
-        )
-        result.items.map { LibraryPageElement.baseItem(api, it) }
+        val items = try {
+            val result by api.itemsApi.getItems(
+                parentId = route.playlistId,
+                sortBy = listOf(ItemSortBy.SORT_NAME),
+                imageTypeLimit = 1,
+                enableImageTypes = listOf(ImageType.PRIMARY),
+                startIndex = offset,
+                limit = limit,
+            )
+            val endOfList = offset + result.items.size >= result.totalRecordCount
+            libraryRepository.cacheItems(result.items, route.playlistId, offset, endOfList)
+            result.items
+        } catch (e: ApiClientException) {
+            Timber.e(e, "Failed to load playlist ${route.playlistId}, using cached items")
+            libraryRepository.getCachedChildren(route.playlistId, offset, limit)
+        }
+        items.map { LibraryPageElement.baseItem(api, it) }
     }
 }
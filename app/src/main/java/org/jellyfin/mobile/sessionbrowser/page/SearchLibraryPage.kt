@@ -5,52 +5,74 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.withContext
 import org.jellyfin.mobile.R
+import org.jellyfin.mobile.library.LibraryRepository
 import org.jellyfin.mobile.sessionbrowser.LibraryItemAction
 import org.jellyfin.mobile.sessionbrowser.LibraryPageElement
 import org.jellyfin.mobile.sessionbrowser.LibraryRoute
 import org.jellyfin.mobile.sessionbrowser.libraryPage
 import org.jellyfin.sdk.api.client.ApiClient
+import org.jellyfin.sdk.api.client.exception.ApiClientException
 import org.jellyfin.sdk.api.client.extensions.itemsApi
 import org.jellyfin.sdk.model.api.BaseItemDto
 import org.jellyfin.sdk.model.api.BaseItemKind
 import org.jellyfin.sdk.model.api.ImageType
+import timber.log.Timber
 
+private const val SEARCH_LIMIT = 50
+
+/**
+ * Search both the server and the local index, server results come first and are completed by local-only hits.
+ * If the server can't be reached, only local results are returned.
+ */
 private suspend fun search(
     api: ApiClient,
+    libraryRepository: LibraryRepository,
     query: String,
     itemTypes: Collection<BaseItemKind>,
 ) = withContext(Dispatchers.IO) {
     async {
-        api.itemsApi.getItems(
-            searchTerm = query,
-            imageTypeLimit = 1,
-            enableImageTypes = listOf(ImageType.PRIMARY),
-            limit = 50,
-            includeItemTypes = itemTypes,
-            recursive = true,
-        )
+        val remoteItems = async {
+            try {
+                val result by api.itemsApi.getItems(
+                    searchTerm = query,
+                    imageTypeLimit = 1,
+                    enableImageTypes = listOf(ImageType.PRIMARY),
+                    limit = SEARCH_LIMIT,
+                    includeItemTypes = itemTypes,
+                    recursive = true,
+                )
+                libraryRepository.cacheItems(result.items)
+                result.items
+            } catch (e: ApiClientException) {
+                Timber.e(e, "Failed to search for $query, using local results")
+                emptyList()
+            }
+        }
+        val localItems = libraryRepository.search(query, itemTypes, SEARCH_LIMIT)
+
+        (remoteItems.await() + localItems).distinctBy(BaseItemDto::id).take(SEARCH_LIMIT)
     }
 }
 
-val SearchLibraryPage = { context: Context, api: ApiClient ->
+val SearchLibraryPage = { context: Context, api: ApiClient, libraryRepository: LibraryRepository ->
     libraryPage<LibraryRoute.Search>(grid = true) { route, offset, limit ->
         if (route.query.isNullOrBlank()) return@libraryPage emptyList()
 
         val (playlists, albums, artists, audioBooks) = listOf(
-            search(api, route.query, setOf(BaseItemKind.PLAYLIST)) to { item: BaseItemDto ->
+            search(api, libraryRepository, route.query, setOf(BaseItemKind.PLAYLIST)) to { item: BaseItemDto ->
                 LibraryPageElement.baseItem(api, item, action = LibraryItemAction.Navigate(LibraryRoute.Playlist(item.id)))
             },
-            search(api, route.query, setOf(BaseItemKind.MUSIC_ALBUM)) to { item: BaseItemDto ->
+            search(api, libraryRepository, route.query, setOf(BaseItemKind.MUSIC_ALBUM)) to { item: BaseItemDto ->
                 LibraryPageElement.baseItem(api, item, action = LibraryItemAction.Navigate(LibraryRoute.Album(item.id)))
             },
-            search(api, route.query, setOf(BaseItemKind.MUSIC_ARTIST)) to { item: BaseItemDto ->
+            search(api, libraryRepository, route.query, setOf(BaseItemKind.MUSIC_ARTIST)) to { item: BaseItemDto ->
                 LibraryPageElement.baseItem(api, item, action = LibraryItemAction.Navigate(LibraryRoute.Artist(item.id)))
             },
-            search(api, route.query, setOf(BaseItemKind.AUDIO_BOOK)) to { item: BaseItemDto ->
+            search(api, libraryRepository, route.query, setOf(BaseItemKind.AUDIO_BOOK)) to { item: BaseItemDto ->
                 LibraryPageElement.baseItem(api, item, action = LibraryItemAction.Play(item))
             },
         ).map { (deferred, mapper) ->
-            deferred.await().content.items.map(mapper)
+            deferred.await().map(mapper)
         }
 
         listOf(
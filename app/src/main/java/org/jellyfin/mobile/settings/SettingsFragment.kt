@@ -61,6 +61,7 @@ class SettingsFragment : Fragment(), BackPressInterceptor {
     private lateinit var horizontalGesturePreference: Preference
     private lateinit var directPlayAssPreference: Preference
     private lateinit var networkBufferPreference: Preference
+    private lateinit var submitPlaybackStatsPreference: Preference
     private lateinit var externalPlayerChoicePreference: Preference
     private lateinit var downloadLocationPreference: Preference
 
@@ -129,6 +130,7 @@ class SettingsFragment : Fragment(), BackPressInterceptor {
                 horizontalGesturePreference.enabled = selection == VideoPlayerType.EXO_PLAYER
                 directPlayAssPreference.enabled = selection == VideoPlayerType.EXO_PLAYER
                 networkBufferPreference.enabled = selection == VideoPlayerType.EXO_PLAYER
+                submitPlaybackStatsPreference.enabled = selection == VideoPlayerType.EXO_PLAYER
                 externalPlayerChoicePreference.enabled = selection == VideoPlayerType.EXTERNAL_PLAYER
             }
         }
@@ -195,6 +197,11 @@ class SettingsFragment : Fragment(), BackPressInterceptor {
             initialSelection = Constants.NETWORK_BUFFER_AUTO
             enabled = appPreferences.videoPlayerType == VideoPlayerType.EXO_PLAYER
         }
+        submitPlaybackStatsPreference = checkBox(Constants.PREF_EXOPLAYER_SUBMIT_PLAYBACK_STATS) {
+            titleRes = R.string.pref_exoplayer_submit_playback_stats
+            summaryRes = R.string.pref_exoplayer_submit_playback_stats_summary
+            enabled = appPreferences.videoPlayerType == VideoPlayerType.EXO_PLAYER
+        }
 
         // Generate available external player options
         val packageManager = requireContext().packageManager
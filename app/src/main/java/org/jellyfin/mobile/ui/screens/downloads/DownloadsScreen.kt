@@ -1,5 +1,6 @@
 package org.jellyfin.mobile.ui.screens.downloads
 
+import android.text.format.Formatter
 import androidx.activity.compose.BackHandler
 import androidx.activity.compose.rememberLauncherForActivityResult
 import androidx.activity.result.contract.ActivityResultContracts
@@ -46,12 +47,15 @@ import androidx.compose.runtime.setValue
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.res.pluralStringResource
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.unit.dp
 import androidx.lifecycle.viewmodel.compose.viewModel
 import org.jellyfin.mobile.R
+import org.jellyfin.mobile.data.entity.DownloadStats
 import org.jellyfin.mobile.downloads.DownloadsViewModel
 
 @Composable
@@ -60,6 +64,7 @@ fun DownloadsScreen(
     onBackPressed: () -> Unit = {},
 ) {
     val downloads by viewModel.downloads.collectAsState()
+    val stats by viewModel.stats.collectAsState()
     val storageLocation by viewModel.storageLocation.collectAsState()
     val storageLocationAccessible by viewModel.storageLocationAccessible.collectAsState()
     val selection = remember { mutableStateSetOf<Long>() }
@@ -225,6 +230,10 @@ fun DownloadsScreen(
                 if (downloads.isEmpty()) {
                     DownloadsEmpty(modifier = Modifier.weight(1f))
                 } else {
+                    DownloadsSummary(
+                        stats = stats,
+                        modifier = Modifier.padding(horizontal = 16.dp, vertical = 8.dp),
+                    )
                     DownloadsList(
                         downloads = downloads,
                         onOpen = { viewModel.openDownload(it) },
@@ -306,6 +315,37 @@ fun StorageLocationInaccessibleCard(
     }
 }
 
+@Composable
+fun DownloadsSummary(
+    stats: DownloadStats,
+    modifier: Modifier = Modifier,
+) {
+    val context = LocalContext.current
+    Column(modifier = modifier.fillMaxWidth()) {
+        Text(
+            text = pluralStringResource(
+                R.plurals.downloads_summary,
+                stats.count,
+                stats.count,
+                Formatter.formatShortFileSize(context, stats.size),
+            ),
+            style = MaterialTheme.typography.body2,
+        )
+
+        if (stats.queuedCount > 0) {
+            Text(
+                text = pluralStringResource(
+                    R.plurals.downloads_queued_summary,
+                    stats.queuedCount,
+                    stats.queuedCount,
+                    Formatter.formatShortFileSize(context, stats.remainingSize),
+                ),
+                style = MaterialTheme.typography.caption,
+            )
+        }
+    }
+}
+
 @Composable
 fun DownloadsEmpty(
     modifier: Modifier = Modifier,
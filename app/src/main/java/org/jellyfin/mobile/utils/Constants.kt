@@ -41,6 +41,7 @@ object Constants {
     const val PREF_EXOPLAYER_ALLOW_HORIZONTAL_GESTURE = "pref_exoplayer_allow_horizontal_gesture"
     const val PREF_EXOPLAYER_DIRECT_PLAY_ASS = "pref_exoplayer_direct_play_ass"
     const val PREF_EXOPLAYER_NETWORK_BUFFER = "pref_exoplayer_network_buffer"
+    const val PREF_EXOPLAYER_SUBMIT_PLAYBACK_STATS = "pref_exoplayer_submit_playback_stats"
     const val NETWORK_BUFFER_AUTO = "auto"
     const val NETWORK_BUFFER_LARGE = "large"
     const val NETWORK_BUFFER_EXTRA_LARGE = "extra_large"
@@ -104,8 +105,12 @@ object Constants {
     // Video player constants
     const val LANGUAGE_UNDEFINED = "und"
     const val PLAYER_TIME_UPDATE_RATE = 10000L
-    const val CHAPTER_MARKING_UPDATE_DELAY = 1000L
-    const val SKIP_MEDIA_SEGMENT_UPDATE_DELAY = 1000L
+    const val PRELOAD_NEXT_ITEM_THRESHOLD_MS = 30_000L
+    const val SEAMLESS_SWITCH_LEAD_MS = 6_000L
+    const val SEAMLESS_SWITCH_PRELOAD_MS = 15_000L
+    const val SEAMLESS_SWITCH_MIN_BUFFER_MS = 2_000L
+    const val SEAMLESS_SWITCH_POSITION_TOLERANCE_MS = 1_000L
+    const val SCRUB_PREVIEW_INTERVAL_MS = 100L
     const val DEFAULT_CONTROLS_TIMEOUT_MS = 2500
     const val SWIPE_GESTURE_EXCLUSION_SIZE_VERTICAL = 64
     const val DEFAULT_CENTER_OVERLAY_TIMEOUT_MS = 250
@@ -162,4 +167,6 @@ object Constants {
     // Misc
     const val PERCENT_MAX = 100
     const val DOWNLOAD_PATH = "/MediaCache/"
+    const val STREAMING_CACHE_PATH = "StreamingCache"
+    const val STREAMING_CACHE_SIZE = 512L * 1024 * 1024
 }
@@ -29,6 +29,7 @@ import org.jellyfin.mobile.webapp.WebViewFragment
 import org.jellyfin.sdk.model.serializer.toUUID
 import org.koin.android.ext.android.get
 import timber.log.Timber
+import java.util.Locale
 import java.util.UUID
 import kotlin.coroutines.resume
 
@@ -127,3 +128,27 @@ fun Uri.extractId(): String {
 
     return item
 }
+
+private val volatileStreamQueryParameters = setOf("playsessionid", "api_key", "apikey", "deviceid")
+
+/**
+ * Cache key for a streamed [Uri] that stays the same across play sessions,
+ * as it ignores session and authentication query parameters.
+ */
+fun Uri.toStreamingCacheKey(): String = getStreamingCacheKey(toString())
+
+/**
+ * Cache key for a streamed [uri], see [toStreamingCacheKey].
+ *
+ * Everything apart from the volatile query parameters stays part of the key, so that different files of the same item,
+ * e.g. direct play and remuxed streams or other media source versions, never share cached bytes.
+ */
+fun getStreamingCacheKey(uri: String): String {
+    val path = uri.substringBefore('?')
+    val query = uri.substringAfter('?', missingDelimiterValue = "")
+    val parameters = query.split('&')
+        .filter { parameter -> parameter.isNotEmpty() }
+        .filter { parameter -> parameter.substringBefore('=').lowercase(Locale.ROOT) !in volatileStreamQueryParameters }
+        .sortedBy { parameter -> parameter.substringBefore('=') }
+    return if (parameters.isEmpty()) path else parameters.joinToString("&", prefix = "$path?")
+}
@@ -0,0 +1,37 @@
+package org.jellyfin.mobile.utils
+
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+
+class StreamingCacheKeyTest : FunSpec({
+    val itemId = "0123456789abcdef0123456789abcdef"
+
+    test("Different files of the same item get different keys") {
+        val directPlay = getStreamingCacheKey(
+            "https://demo.jellyfin.org/Videos/$itemId/stream?static=true&mediaSourceId=$itemId&PlaySessionId=abc",
+        )
+        val remux = getStreamingCacheKey(
+            "https://demo.jellyfin.org/Videos/$itemId/stream.mkv?static=true&mediaSourceId=$itemId&PlaySessionId=abc",
+        )
+        val otherVersion = getStreamingCacheKey(
+            "https://demo.jellyfin.org/Videos/$itemId/stream?static=true&mediaSourceId=fedcba9876543210fedcba9876543210&PlaySessionId=abc",
+        )
+
+        directPlay shouldNotBe remux
+        directPlay shouldNotBe otherVersion
+        remux shouldNotBe otherVersion
+    }
+
+    test("Session and authentication parameters are ignored") {
+        val first = getStreamingCacheKey(
+            "https://demo.jellyfin.org/Videos/$itemId/stream?static=true&PlaySessionId=abc&api_key=token&DeviceId=device",
+        )
+        val second = getStreamingCacheKey(
+            "https://demo.jellyfin.org/Videos/$itemId/stream?DeviceId=other&api_key=token2&PlaySessionId=def&static=true",
+        )
+
+        first shouldBe second
+        first shouldBe "https://demo.jellyfin.org/Videos/$itemId/stream?static=true"
+    }
+})